@@ -0,0 +1,61 @@
+package com.fynd.extension.storage.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A handful of hot companies read and renewed by a growing number of threads, showing how each backend
+ * behaves under lock and connection pool contention.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class ContentionBenchmark {
+
+    private static final int HOT_KEYS = 16;
+
+    @Benchmark
+    @Threads(1)
+    public String hotKeys1Thread(StorageBenchmarkState state) {
+        return hotKeyOperation(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public String hotKeys4Threads(StorageBenchmarkState state) {
+        return hotKeyOperation(state);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public String hotKeys16Threads(StorageBenchmarkState state) {
+        return hotKeyOperation(state);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public String hotKeys64Threads(StorageBenchmarkState state) {
+        return hotKeyOperation(state);
+    }
+
+    // 9 reads for every renewal
+    private String hotKeyOperation(StorageBenchmarkState state) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String key = state.keys[random.nextInt(HOT_KEYS)];
+        if (random.nextInt(10) == 0) {
+            return state.storage.setex(key, 3600, state.randomValue());
+        }
+        return state.storage.get(key);
+    }
+}
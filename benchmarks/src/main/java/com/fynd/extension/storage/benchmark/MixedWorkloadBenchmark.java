@@ -0,0 +1,41 @@
+package com.fynd.extension.storage.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session-like traffic: mostly reads, with a share of token renewals written through {@code setex}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@Threads(4)
+@State(Scope.Benchmark)
+public class MixedWorkloadBenchmark {
+
+    @Param({"50", "90", "99"})
+    public int readPercent;
+
+    @Benchmark
+    public String mixed(StorageBenchmarkState state) {
+        if (ThreadLocalRandom.current()
+                             .nextInt(100) < readPercent) {
+            return state.storage.get(state.randomKey());
+        }
+        return state.storage.setex(state.randomKey(), 3600, state.randomValue());
+    }
+}
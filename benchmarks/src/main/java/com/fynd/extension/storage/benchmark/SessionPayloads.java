@@ -0,0 +1,49 @@
+package com.fynd.extension.storage.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Values shaped like a serialized {@code Session}, padded to the requested size.
+ */
+final class SessionPayloads {
+
+    private SessionPayloads() {
+    }
+
+    static String session(String companyId, int size) {
+        StringBuilder json = new StringBuilder(size + 64);
+        json.append("{\"id\":\"offline:")
+            .append(companyId)
+            .append("\",\"company_id\":\"")
+            .append(companyId)
+            .append("\",\"state\":\"")
+            .append(randomToken(36))
+            .append("\",\"scope\":[\"company/profile\",\"company/orders\",\"company/products\"]")
+            .append(",\"expires\":\"2030-01-01T00:00:00.000Z\",\"expires_in\":3600")
+            .append(",\"access_token_validity\":")
+            .append(System.currentTimeMillis() + 3_600_000)
+            .append(",\"access_mode\":\"offline\",\"access_token\":\"")
+            .append(randomToken(40))
+            .append("\",\"refresh_token\":\"")
+            .append(randomToken(40))
+            .append("\",\"extension_id\":\"")
+            .append(randomToken(24))
+            .append("\",\"current_user\":{\"user_id\":\"")
+            .append(randomToken(24))
+            .append("\",\"debug\":\"");
+        while (json.length() < size - 3) {
+            json.append(randomToken(Math.min(64, size - 3 - json.length())));
+        }
+        return json.append("\"}}")
+                   .toString();
+    }
+
+    private static String randomToken(int length) {
+        char[] chars = new char[length];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < length; i++) {
+            chars[i] = (char) ('a' + random.nextInt(26));
+        }
+        return new String(chars);
+    }
+}
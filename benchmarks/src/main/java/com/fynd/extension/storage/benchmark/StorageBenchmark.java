@@ -0,0 +1,37 @@
+package com.fynd.extension.storage.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single operation throughput of every storage backend.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class StorageBenchmark {
+
+    @Benchmark
+    public String get(StorageBenchmarkState state) {
+        return state.storage.get(state.randomKey());
+    }
+
+    @Benchmark
+    public String set(StorageBenchmarkState state) {
+        return state.storage.set(state.randomKey(), state.randomValue());
+    }
+
+    @Benchmark
+    public String setex(StorageBenchmarkState state) {
+        return state.storage.setex(state.randomKey(), 3600, state.randomValue());
+    }
+}
@@ -0,0 +1,67 @@
+package com.fynd.extension.storage.benchmark;
+
+import com.fynd.extension.storage.BaseStorage;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Storage under test, pre-populated with {@code keyCount} session-sized values.
+ */
+@State(Scope.Benchmark)
+public class StorageBenchmarkState {
+
+    @Param({"memory", "sqlite-file", "sqlite-memory", "redis", "multilevel", "multilevel-write-behind"})
+    public String backend;
+
+    // Roughly a minimal, a typical and a large serialized Session
+    @Param({"512", "2048", "8192"})
+    public int valueSize;
+
+    @Param({"10000"})
+    public int keyCount;
+
+    BaseStorage storage;
+
+    String[] keys;
+
+    String[] values;
+
+    private StorageFixture fixture;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        fixture = new StorageFixture(backend);
+        storage = fixture.getStorage();
+        keys = new String[keyCount];
+        // A pool of distinct values keeps writes from being served by identical strings
+        values = new String[64];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = SessionPayloads.session("company-" + i, valueSize);
+        }
+        for (int i = 0; i < keyCount; i++) {
+            keys[i] = "offline:" + i;
+            storage.setex(keys[i], 3600, values[i % values.length]);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        fixture.close();
+    }
+
+    String randomKey() {
+        return keys[ThreadLocalRandom.current()
+                                     .nextInt(keys.length)];
+    }
+
+    String randomValue() {
+        return values[ThreadLocalRandom.current()
+                                       .nextInt(values.length)];
+    }
+}
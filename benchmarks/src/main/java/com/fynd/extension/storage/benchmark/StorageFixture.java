@@ -0,0 +1,117 @@
+package com.fynd.extension.storage.benchmark;
+
+import com.fynd.extension.storage.BaseStorage;
+import com.fynd.extension.storage.MemoryStorage;
+import com.fynd.extension.storage.MultiLevelStorage;
+import com.fynd.extension.storage.RedisStorage;
+import com.fynd.extension.storage.SQLiteStorage;
+import com.github.fppt.jedismock.RedisServer;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import de.bwaldvogel.mongo.MongoServer;
+import de.bwaldvogel.mongo.backend.memory.MemoryBackend;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Builds a storage backend together with the in-JVM servers it talks to, so that every benchmark runs
+ * without network access or external services.
+ */
+final class StorageFixture implements AutoCloseable {
+
+    static final String PREFIX = "bench";
+
+    private final Deque<AutoCloseable> resources = new ArrayDeque<>();
+
+    private final BaseStorage storage;
+
+    StorageFixture(String backend) throws Exception {
+        switch (backend) {
+            case "memory":
+                storage = new MemoryStorage(PREFIX);
+                break;
+            case "sqlite-file":
+                storage = sqlite(createTempDatabase());
+                break;
+            case "sqlite-memory":
+                storage = sqlite("jdbc:sqlite::memory:");
+                break;
+            case "redis":
+                storage = new RedisStorage(startRedis(), PREFIX);
+                break;
+            case "multilevel":
+                storage = multiLevel(new HashMap<>());
+                break;
+            case "multilevel-write-behind":
+                Map<String, String> options = new HashMap<>();
+                options.put("writeBehind", "true");
+                storage = multiLevel(options);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown storage backend " + backend);
+        }
+    }
+
+    BaseStorage getStorage() {
+        return storage;
+    }
+
+    @Override
+    public void close() throws Exception {
+        while (!resources.isEmpty()) {
+            resources.pop()
+                     .close();
+        }
+    }
+
+    private BaseStorage sqlite(String dbUrl) throws ClassNotFoundException {
+        SQLiteStorage sqliteStorage = new SQLiteStorage(dbUrl, PREFIX);
+        resources.push(sqliteStorage);
+        return sqliteStorage;
+    }
+
+    private BaseStorage multiLevel(Map<String, String> options) throws IOException {
+        JedisPool jedisPool = startRedis();
+        MongoServer mongoServer = new MongoServer(new MemoryBackend());
+        InetSocketAddress address = mongoServer.bind();
+        resources.push(mongoServer::shutdownNow);
+        MongoClient mongoClient = MongoClients.create(
+                "mongodb://" + address.getHostString() + ":" + address.getPort());
+        resources.push(mongoClient);
+        MultiLevelStorage multiLevelStorage = new MultiLevelStorage(jedisPool, mongoClient.getDatabase(PREFIX),
+                                                                    PREFIX, options);
+        resources.push(multiLevelStorage);
+        return multiLevelStorage;
+    }
+
+    private JedisPool startRedis() throws IOException {
+        RedisServer redisServer = RedisServer.newRedisServer();
+        redisServer.start();
+        resources.push(redisServer::stop);
+        JedisPoolConfig poolConfig = new JedisPoolConfig();
+        poolConfig.setMaxTotal(128);
+        poolConfig.setMaxIdle(128);
+        JedisPool jedisPool = new JedisPool(poolConfig, redisServer.getHost(), redisServer.getBindPort());
+        resources.push(jedisPool);
+        return jedisPool;
+    }
+
+    private String createTempDatabase() throws IOException {
+        Path dbFile = Files.createTempFile("fdk-storage-bench", ".db");
+        resources.push(() -> {
+            Files.deleteIfExists(dbFile);
+            Files.deleteIfExists(Path.of(dbFile + "-wal"));
+            Files.deleteIfExists(Path.of(dbFile + "-shm"));
+        });
+        return "jdbc:sqlite:" + dbFile;
+    }
+}
@@ -188,7 +188,7 @@ public class ExtensionController {
                 if (ext.getWebhookService().isInitialized) {
                     PlatformClient platformClient = ext.getPlatformClient(companyId, fdkSession);
                     ext.getWebhookService()
-                       .syncEvents(platformClient, null, true);
+                       .syncEventsIfStale(platformClient, ext.getStorage(), true);
                 }
                 String redirectUrl = ext.getCallbacks()
                                         .getAuth()
@@ -244,7 +244,7 @@ public class ExtensionController {
             if (ext.getWebhookService().isInitialized) {
                 PlatformClient platformClient = ext.getPlatformClient(companyId, session);
                 ext.getWebhookService()
-                   .syncEvents(platformClient, null, true);
+                   .syncEventsIfStale(platformClient, ext.getStorage(), true);
             }
             request.setAttribute("session", session);
             log.info("Extension installed for company: {} on company creation.`", companyId);
@@ -275,6 +275,9 @@ public class ExtensionController {
                    .apply(request);
                 sessionStorage.deleteSession(sid);
             }
+            ext.evictClients(client.getCompanyId());
+            ext.getWebhookService()
+               .invalidateSyncStamp(client.getCompanyId(), ext.getStorage());
             return ResponseEntity.status(HttpStatus.OK)
                                  .body(new Response(true));
         } catch (Exception error) {
@@ -0,0 +1,16 @@
+package com.fynd.extension.error;
+
+import org.springframework.lang.NonNull;
+
+import java.io.IOException;
+
+/**
+ * Thrown instead of calling a host whose circuit is open. An {@link IOException}, so that OkHttp hands it
+ * to the caller like any other failed call.
+ */
+public class FdkCircuitOpen extends IOException {
+
+    public FdkCircuitOpen(@NonNull String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,13 @@
+package com.fynd.extension.error;
+
+import org.springframework.lang.NonNull;
+
+/**
+ * A webhook delivery that can't be taken now. Answer it with 429 or 503, not with a 2xx, so the platform
+ * delivers it again later.
+ */
+public class FdkWebhookRejected extends RuntimeException {
+    public FdkWebhookRejected(@NonNull String message) {
+        super(message);
+    }
+}
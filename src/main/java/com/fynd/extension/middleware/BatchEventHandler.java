@@ -0,0 +1,16 @@
+package com.fynd.extension.middleware;
+
+import java.util.List;
+
+/**
+ * Handler receiving webhook events in batches, grouped by event name and company. Register it under the
+ * {@code handler} name of an event map entry, {@code batch_size} and {@code linger_ms} on the entry decide
+ * when a batch is handed over.
+ * <p>
+ * Events are acknowledged to the platform before they are batched. A batch that fails is retried up to
+ * {@code batch_max_attempts} times, so a handler may see an event more than once.
+ */
+public interface BatchEventHandler {
+
+    void handle(String eventName, String companyId, List<WebhookEvent> events);
+}
@@ -3,4 +3,12 @@ package com.fynd.extension.middleware;
 public interface EventHandler {
 
     void handle(String eventName, Object body, String companyId, String applicationId);
+
+    /**
+     * Called for every delivery. Override it to read the body as bytes, a {@code JsonNode} or a typed object
+     * without building an org.json tree, by default the payload is passed on as a {@code JSONObject}.
+     */
+    default void handle(String eventName, WebhookPayload payload, String companyId, String applicationId) {
+        handle(eventName, payload.asJSONObject(), companyId, applicationId);
+    }
 }
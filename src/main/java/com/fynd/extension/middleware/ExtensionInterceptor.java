@@ -8,8 +8,18 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Adds the extension's credentials to calls made to the Fynd cluster. Header values are built once and
+ * rebuilt only when the api key or secret of the {@link ExtensionProperties} change. The key and secret
+ * are published together in one immutable holder, so a request never pairs a new key with an old secret.
+ * <p>
+ * {@link #forProperties} shares one interceptor, and its header values, per {@link ExtensionProperties}.
+ */
 @Component
 public class ExtensionInterceptor implements Interceptor {
 
@@ -18,21 +28,81 @@ public class ExtensionInterceptor implements Interceptor {
 
     private ExtensionProperties extensionProperties;
 
+    private volatile HeaderValues headerValues;
+
+    // Keyed by instance, extension properties live as long as the application
+    private static final Map<ExtensionProperties, ExtensionInterceptor> SHARED = new ConcurrentHashMap<>();
+
     public ExtensionInterceptor(ExtensionProperties extensionProperties) {
         this.extensionProperties = extensionProperties;
     }
 
+    /**
+     * Interceptor shared by every call made with {@code extensionProperties}.
+     */
+    public static ExtensionInterceptor forProperties(ExtensionProperties extensionProperties) {
+        return SHARED.computeIfAbsent(extensionProperties, ExtensionInterceptor::new);
+    }
+
     @Override
     public Response intercept(Chain chain) throws IOException {
-        String bearerToken = Base64.getEncoder()
-                                   .encodeToString(
-                                           (extensionProperties.getApiKey() + ":" + extensionProperties.getApiSecret()).getBytes());
+        HeaderValues values = headerValues();
         Request request = chain.request()
                                .newBuilder()
-                               .addHeader("Authorization", "Bearer " + bearerToken)
+                               .addHeader("Authorization", values.authorization)
                                .addHeader("Content-Type", "application/json")
-                               .addHeader("x-ext-lib-version", "java/" + buildVersion)
+                               .addHeader("x-ext-lib-version", values.libVersion)
                                .build();
         return chain.proceed(request);
     }
+
+    /**
+     * Switches to new credentials at runtime. Calls already built with this interceptor use them from their
+     * next request on.
+     */
+    public void rotateCredentials(String apiKey, String apiSecret) {
+        synchronized (extensionProperties) {
+            extensionProperties.setApiKey(apiKey);
+            extensionProperties.setApiSecret(apiSecret);
+            headerValues = new HeaderValues(apiKey, apiSecret, buildVersion);
+        }
+    }
+
+    private HeaderValues headerValues() {
+        HeaderValues values = headerValues;
+        // Identity checks, credentials set on the properties are new string instances. A pair read while
+        // it is being rotated may not match, it is then read again under the rotation lock.
+        if (values == null || values.apiKey != extensionProperties.getApiKey()
+                || values.apiSecret != extensionProperties.getApiSecret() || values.buildVersion != buildVersion) {
+            synchronized (extensionProperties) {
+                values = new HeaderValues(extensionProperties.getApiKey(), extensionProperties.getApiSecret(),
+                                          buildVersion);
+                headerValues = values;
+            }
+        }
+        return values;
+    }
+
+    private static final class HeaderValues {
+
+        final String apiKey;
+
+        final String apiSecret;
+
+        final String buildVersion;
+
+        final String authorization;
+
+        final String libVersion;
+
+        HeaderValues(String apiKey, String apiSecret, String buildVersion) {
+            this.apiKey = apiKey;
+            this.apiSecret = apiSecret;
+            this.buildVersion = buildVersion;
+            this.authorization = "Bearer " + Base64.getEncoder()
+                                                   .encodeToString((apiKey + ":" + apiSecret).getBytes(
+                                                           StandardCharsets.UTF_8));
+            this.libVersion = "java/" + buildVersion;
+        }
+    }
 }
@@ -0,0 +1,174 @@
+package com.fynd.extension.middleware;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fynd.extension.model.HttpProperties;
+import com.fynd.extension.model.RetryProperties;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import retrofit2.Retrofit;
+import retrofit2.converter.jackson.JacksonConverterFactory;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTTP client shared by every call the library makes to the Fynd cluster.
+ * <p>
+ * All services are built on one {@link OkHttpClient}, so they share its connection pool and dispatcher
+ * and keep connections alive across calls. Each service adds its own interceptors on top through
+ * {@link OkHttpClient#newBuilder()}, which does not copy the pool.
+ */
+@Slf4j
+public class HttpTransport {
+
+    private static volatile HttpTransport instance;
+
+    // Settings the transport was built with, null when it was built with the defaults
+    private final HttpProperties httpProperties;
+
+    private volatile boolean settingsMismatchLogged;
+
+    private final OkHttpClient httpClient;
+
+    private final JacksonConverterFactory converterFactory;
+
+    private final RetryPolicy retryPolicy;
+
+    private final ScheduledThreadPoolExecutor retryScheduler;
+
+    private HttpTransport(HttpProperties httpProperties) {
+        this.httpProperties = httpProperties;
+        HttpProperties settings = Objects.requireNonNullElseGet(httpProperties, HttpProperties::new);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(settings.getMaxRequests());
+        dispatcher.setMaxRequestsPerHost(settings.getMaxRequestsPerHost());
+        OkHttpClient.Builder builder = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(settings.getMaxIdleConnections(),
+                                                   settings.getKeepAliveSeconds(), TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(settings.getConnectTimeoutMs(), TimeUnit.MILLISECONDS)
+                .readTimeout(settings.getReadTimeoutMs(), TimeUnit.MILLISECONDS)
+                .writeTimeout(settings.getWriteTimeoutMs(), TimeUnit.MILLISECONDS)
+                .protocols(settings.isHttp2() ? List.of(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                                   : List.of(Protocol.HTTP_1_1));
+        this.httpClient = builder.build();
+        this.converterFactory = JacksonConverterFactory.create(
+                new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false));
+        this.retryPolicy = new RetryPolicy(Objects.requireNonNullElseGet(settings.getRetry(),
+                                                                         RetryProperties::new));
+        this.retryScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "fdk-http-retry");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.retryScheduler.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Returns the shared transport, created from {@code httpProperties} on first use, or from the defaults
+     * when they are {@code null}. Later calls get the same transport whatever they pass, other settings are
+     * logged as ignored.
+     */
+    public static HttpTransport getInstance(HttpProperties httpProperties) {
+        if (instance == null) {
+            synchronized (HttpTransport.class) {
+                if (instance == null) {
+                    instance = new HttpTransport(httpProperties);
+                    log.debug("Shared HTTP transport created");
+                }
+            }
+        }
+        HttpTransport transport = instance;
+        if (httpProperties != null && httpProperties != transport.httpProperties
+                && !transport.settingsMismatchLogged) {
+            transport.settingsMismatchLogged = true;
+            log.warn("Shared HTTP transport was already created with {}, the http settings passed now are ignored. "
+                             + "Initialize the extension before building clients or retry interceptors.",
+                     transport.httpProperties == null ? "the defaults" : "other settings");
+        }
+        return transport;
+    }
+
+    public <S> S createService(String baseUrl, Class<S> serviceClass, List<Interceptor> interceptorList) {
+        OkHttpClient.Builder clientBuilder = httpClient.newBuilder();
+        interceptorList.forEach(clientBuilder::addInterceptor);
+        return new Retrofit.Builder().baseUrl(baseUrl)
+                                     .client(clientBuilder.build())
+                                     .addConverterFactory(converterFactory)
+                                     .build()
+                                     .create(serviceClass);
+    }
+
+    /**
+     * Like {@link #createService}, with calls that retry through {@link RetryingCall}. {@code execute()}
+     * retries on the calling thread, {@code enqueue} schedules retries so no thread sleeps through the backoff.
+     */
+    public <S> S createRetryingService(String baseUrl, Class<S> serviceClass, List<Interceptor> interceptorList) {
+        return createRetryingService(baseUrl, serviceClass, interceptorList, 0);
+    }
+
+    /**
+     * Like {@link #createRetryingService(String, Class, List)}, with every call, retries included, failed and
+     * canceled once it took {@code callTimeoutMs}. {@code 0} sets no call timeout.
+     */
+    public <S> S createRetryingService(String baseUrl, Class<S> serviceClass, List<Interceptor> interceptorList,
+                                       long callTimeoutMs) {
+        OkHttpClient.Builder clientBuilder = httpClient.newBuilder()
+                                                       .callTimeout(callTimeoutMs, TimeUnit.MILLISECONDS);
+        interceptorList.forEach(clientBuilder::addInterceptor);
+        return new Retrofit.Builder().baseUrl(baseUrl)
+                                     .client(clientBuilder.build())
+                                     .addCallAdapterFactory(new RetryCallAdapterFactory(retryPolicy, retryScheduler))
+                                     .addConverterFactory(converterFactory)
+                                     .build()
+                                     .create(serviceClass);
+    }
+
+    public OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Retry policy shared by retrying services and every {@link RetryInterceptor}, with the retry metrics of
+     * each host.
+     */
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Open connections in the pool, idle or in use.
+     */
+    public int getConnectionCount() {
+        return httpClient.connectionPool()
+                         .connectionCount();
+    }
+
+    public int getIdleConnectionCount() {
+        return httpClient.connectionPool()
+                         .idleConnectionCount();
+    }
+
+    /**
+     * Asynchronous calls currently executing.
+     */
+    public int getRunningCallCount() {
+        return httpClient.dispatcher()
+                         .runningCallsCount();
+    }
+
+    /**
+     * Asynchronous calls waiting for the per host or global request limit.
+     */
+    public int getQueuedCallCount() {
+        return httpClient.dispatcher()
+                         .queuedCallsCount();
+    }
+}
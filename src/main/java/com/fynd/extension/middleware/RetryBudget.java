@@ -0,0 +1,36 @@
+package com.fynd.extension.middleware;
+
+/**
+ * Token bucket limiting the retries made to one host. A retry takes a whole token and every successful
+ * attempt puts back a fraction of one, so retries stay a bounded share of the traffic while a host fails.
+ */
+public class RetryBudget {
+
+    private final double maxTokens;
+
+    private final double tokenRatio;
+
+    private double tokens;
+
+    public RetryBudget(int maxTokens, double tokenRatio) {
+        this.maxTokens = Math.max(0, maxTokens);
+        this.tokenRatio = Math.max(0, tokenRatio);
+        this.tokens = this.maxTokens;
+    }
+
+    public synchronized boolean tryAcquire() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        tokens = Math.min(maxTokens, tokens + tokenRatio);
+    }
+
+    public synchronized double getTokens() {
+        return tokens;
+    }
+}
@@ -0,0 +1,45 @@
+package com.fynd.extension.middleware;
+
+import retrofit2.Call;
+import retrofit2.CallAdapter;
+import retrofit2.Retrofit;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Makes the {@link Call}s of a Retrofit service retry as decided by a {@link RetryPolicy}. Each retry is
+ * scheduled on {@code scheduler} and sent with {@link Call#enqueue}, so no thread waits out the backoff.
+ */
+public class RetryCallAdapterFactory extends CallAdapter.Factory {
+
+    private final RetryPolicy retryPolicy;
+
+    private final ScheduledExecutorService scheduler;
+
+    public RetryCallAdapterFactory(RetryPolicy retryPolicy, ScheduledExecutorService scheduler) {
+        this.retryPolicy = retryPolicy;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public CallAdapter<?, ?> get(Type returnType, Annotation[] annotations, Retrofit retrofit) {
+        if (getRawType(returnType) != Call.class || !(returnType instanceof ParameterizedType)) {
+            return null;
+        }
+        Type responseType = getParameterUpperBound(0, (ParameterizedType) returnType);
+        return new CallAdapter<Object, Call<Object>>() {
+            @Override
+            public Type responseType() {
+                return responseType;
+            }
+
+            @Override
+            public Call<Object> adapt(Call<Object> call) {
+                return new RetryingCall<>(call, retryPolicy, scheduler);
+            }
+        };
+    }
+}
@@ -1,57 +1,104 @@
 package com.fynd.extension.middleware;
 
 import java.io.IOException;
+
+import com.fynd.extension.error.FdkCircuitOpen;
+import com.fynd.extension.model.RetryProperties;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Interceptor;
+import okhttp3.Request;
 import okhttp3.Response;
 
+/**
+ * Retries calls to the Fynd cluster as decided by a {@link RetryPolicy}, which by default is the one
+ * shared through {@link HttpTransport}. The last response or failure is handed to the caller once the
+ * attempts, the deadline or the host's retry budget run out.
+ * <p>
+ * The backoff is waited out on the calling thread. Services built with
+ * {@link HttpTransport#createRetryingService} retry without holding a thread and need no interceptor.
+ */
 @Slf4j
 public class RetryInterceptor implements Interceptor {
 
-    private int maxRetries = Integer.MAX_VALUE;
+    private static final RetryPolicy DEFAULT_RETRY_POLICY = new RetryPolicy(new RetryProperties());
 
-    public static long calculateRetryTime(int attempt) {
-        long baseTime = 30 * 1000; // 30 seconds in milliseconds
-        long increasePerAttempt = 60 * 1000; // 1 minute in milliseconds
+    private volatile RetryPolicy retryPolicy;
 
-        if (attempt <= 3) {
-            return baseTime;
-        } else {
-            return (attempt - 3) * increasePerAttempt;
-        }
+    /**
+     * Uses the policy of the shared {@link HttpTransport}, looked up on the first call so that a transport
+     * created by the extension with its own settings is picked up.
+     */
+    public RetryInterceptor() {
+    }
+
+    public RetryInterceptor(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Backoff before the given retry under the default retry settings.
+     *
+     * @deprecated retries follow a {@link RetryPolicy}, use {@link RetryPolicy#backoffMillis(int)}
+     */
+    @Deprecated
+    public static long calculateRetryTime(int attempt) {
+        return DEFAULT_RETRY_POLICY.backoffMillis(attempt);
     }
 
     @Override
     public Response intercept(Chain chain) throws IOException {
-        int tryCount = 0;
-        while (tryCount < maxRetries) {
+        RetryPolicy retryPolicy = this.retryPolicy;
+        if (retryPolicy == null) {
+            retryPolicy = HttpTransport.getInstance(null)
+                                       .getRetryPolicy();
+            this.retryPolicy = retryPolicy;
+        }
+        Request request = chain.request();
+        String hostName = request.url()
+                                 .host();
+        RetryPolicy.Host host = retryPolicy.host(hostName);
+        host.metrics.requests.incrementAndGet();
+        long startedAt = System.currentTimeMillis();
+        for (int attempt = 1; ; attempt++) {
+            Response response = null;
+            IOException failure = null;
             try {
-                Response response = chain.proceed(chain.request());
-                int responseCode = response.code();
-                if (responseCode == 502 || responseCode == 503 || responseCode == 504) {
-                    throw new IOException("Request failed - " + tryCount);
-                } else {
-                    return response;
-                }
+                retryPolicy.beforeAttempt(host, hostName);
+                response = chain.proceed(request);
             } catch (IOException e) {
-                log.error("An error occurred: " + e.getMessage());
-                if (tryCount == maxRetries - 1) {
-                    throw e; // Stop retrying after reaching max retries
-                }
-                long time = calculateRetryTime(tryCount + 1);
-                log.info("RetryInterceptor " + "Retrying request after " + time + "ms. Attempt: " + (tryCount + 1));
-                try {
-                    Thread.sleep(time);
-                } catch (InterruptedException interruptedEx) {
-                    // Handle the interruption here (optional)
-                    log.error("RetryInterceptor Thread interrupted during retry " + interruptedEx.getMessage());
-                    throw new IOException("Thread interrupted during retry", interruptedEx); // Re-throw as IOException
+                failure = e;
+            } catch (RuntimeException e) {
+                retryPolicy.onAbort(host);
+                host.metrics.failures.incrementAndGet();
+                throw e;
+            }
+            if (failure == null && !retryPolicy.isRetryableStatus(response.code())) {
+                retryPolicy.onSuccess(host);
+                return response;
+            }
+            long delay = failure instanceof FdkCircuitOpen ? -1
+                    : retryPolicy.onFailure(request, host, attempt, startedAt);
+            if (delay < 0 || chain.call()
+                                  .isCanceled()) {
+                host.metrics.failures.incrementAndGet();
+                if (failure != null) {
+                    throw failure;
                 }
-
+                return response;
+            }
+            log.info("RetryInterceptor Retrying {} {} after {}ms. Attempt: {}", request.method(), request.url()
+                                                                                                     .encodedPath(),
+                     delay, attempt + 1);
+            if (response != null) {
+                response.close();
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException interruptedEx) {
+                Thread.currentThread()
+                      .interrupt();
+                throw new IOException("Thread interrupted during retry", interruptedEx);
             }
-            tryCount++;
         }
-
-        return null; // This should never be reached
     }
 }
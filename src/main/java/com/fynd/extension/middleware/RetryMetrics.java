@@ -0,0 +1,57 @@
+package com.fynd.extension.middleware;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Retry counters of one host.
+ */
+public class RetryMetrics {
+
+    final AtomicLong requests = new AtomicLong();
+
+    final AtomicLong attempts = new AtomicLong();
+
+    final AtomicLong retries = new AtomicLong();
+
+    final AtomicLong failures = new AtomicLong();
+
+    final AtomicLong budgetExhausted = new AtomicLong();
+
+    final AtomicLong circuitRejected = new AtomicLong();
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * Calls sent to the host, first attempts and retries.
+     */
+    public long getAttempts() {
+        return attempts.get();
+    }
+
+    public long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Requests that still failed after their last attempt.
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * Retries not made because the host's retry budget was spent.
+     */
+    public long getBudgetExhausted() {
+        return budgetExhausted.get();
+    }
+
+    /**
+     * Attempts rejected without calling the host because its circuit was open.
+     */
+    public long getCircuitRejected() {
+        return circuitRejected.get();
+    }
+}
@@ -0,0 +1,141 @@
+package com.fynd.extension.middleware;
+
+import com.fynd.extension.error.FdkCircuitOpen;
+import com.fynd.extension.model.RetryProperties;
+import okhttp3.Request;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Decides whether and when a failed call to the Fynd cluster is retried, and keeps the retry budget,
+ * circuit breaker and metrics of every host it has seen.
+ * <p>
+ * Only idempotent methods are retried, after a connection failure or a 502, 503 or 504 response, with
+ * exponential backoff and full jitter.
+ */
+public class RetryPolicy {
+
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    private final RetryProperties properties;
+
+    private final Map<String, Host> hosts = new ConcurrentHashMap<>();
+
+    public RetryPolicy(RetryProperties properties) {
+        this.properties = properties;
+    }
+
+    public static boolean isIdempotent(Request request) {
+        return IDEMPOTENT_METHODS.contains(request.method());
+    }
+
+    public boolean isRetryableStatus(int code) {
+        return code == 502 || code == 503 || code == 504;
+    }
+
+    public int getMaxAttempts() {
+        return Math.max(1, properties.getMaxAttempts());
+    }
+
+    public long getDeadlineMs() {
+        return properties.getDeadlineMs();
+    }
+
+    /**
+     * Delay before the given retry, 1 for the first one, drawn uniformly up to the exponential backoff.
+     */
+    public long backoffMillis(int retry) {
+        long cap = properties.getBaseDelayMs() << Math.min(retry - 1, 20);
+        cap = Math.min(properties.getMaxDelayMs(), Math.max(0, cap));
+        return cap > 0 ? ThreadLocalRandom.current()
+                                          .nextLong(cap + 1) : 0;
+    }
+
+    public Host host(String hostName) {
+        return hosts.computeIfAbsent(hostName, name -> new Host(
+                new RetryBudget(properties.getBudgetTokens(), properties.getBudgetRatio()),
+                new CircuitBreaker(properties.getCircuitFailureThreshold(), properties.getCircuitOpenMs())));
+    }
+
+    /**
+     * Counts an attempt on the host, or rejects it when the host's circuit is open.
+     */
+    void beforeAttempt(Host host, String hostName) throws FdkCircuitOpen {
+        if (!host.circuitBreaker.allowRequest()) {
+            host.metrics.circuitRejected.incrementAndGet();
+            throw new FdkCircuitOpen("Circuit open for " + hostName + ", failing fast");
+        }
+        host.metrics.attempts.incrementAndGet();
+    }
+
+    void onSuccess(Host host) {
+        host.circuitBreaker.onSuccess();
+        host.budget.onSuccess();
+    }
+
+    /**
+     * Ends an attempt that threw before the host answered, so that it does not hold the circuit's probe.
+     */
+    void onAbort(Host host) {
+        host.circuitBreaker.onAbort();
+    }
+
+    /**
+     * Records a failed attempt and returns the delay before retrying it, or -1 when it is not retried.
+     */
+    long onFailure(Request request, Host host, int attempt, long startedAt) {
+        host.circuitBreaker.onFailure();
+        if (!isIdempotent(request) || attempt >= getMaxAttempts()) {
+            return -1;
+        }
+        long delay = backoffMillis(attempt);
+        if (System.currentTimeMillis() + delay - startedAt >= getDeadlineMs()) {
+            return -1;
+        }
+        if (!host.budget.tryAcquire()) {
+            host.metrics.budgetExhausted.incrementAndGet();
+            return -1;
+        }
+        host.metrics.retries.incrementAndGet();
+        return delay;
+    }
+
+    /**
+     * Retry counters per host name.
+     */
+    public Map<String, RetryMetrics> getMetrics() {
+        Map<String, RetryMetrics> metrics = new ConcurrentHashMap<>();
+        hosts.forEach((name, host) -> metrics.put(name, host.metrics));
+        return Collections.unmodifiableMap(metrics);
+    }
+
+    public static final class Host {
+
+        final RetryBudget budget;
+
+        final CircuitBreaker circuitBreaker;
+
+        final RetryMetrics metrics = new RetryMetrics();
+
+        Host(RetryBudget budget, CircuitBreaker circuitBreaker) {
+            this.budget = budget;
+            this.circuitBreaker = circuitBreaker;
+        }
+
+        public RetryBudget getBudget() {
+            return budget;
+        }
+
+        public CircuitBreaker getCircuitBreaker() {
+            return circuitBreaker;
+        }
+
+        public RetryMetrics getMetrics() {
+            return metrics;
+        }
+    }
+}
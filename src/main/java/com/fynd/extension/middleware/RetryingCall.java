@@ -0,0 +1,256 @@
+package com.fynd.extension.middleware;
+
+import com.fynd.extension.error.FdkCircuitOpen;
+import lombok.extern.slf4j.Slf4j;
+import okhttp3.Request;
+import okio.Timeout;
+import retrofit2.Call;
+import retrofit2.Callback;
+import retrofit2.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A {@link Call} retrying failed attempts with backoff. {@link #execute()} runs every attempt on the calling
+ * thread and waits out the backoff there, so it never depends on the dispatcher's limits. {@link #enqueue}
+ * sends every attempt with {@link Call#enqueue} and schedules retries on a shared scheduler.
+ */
+@Slf4j
+class RetryingCall<T> implements Call<T> {
+
+    private final Call<T> original;
+
+    private final RetryPolicy retryPolicy;
+
+    private final ScheduledExecutorService scheduler;
+
+    private volatile Call<T> current;
+
+    private volatile Future<?> scheduledRetry;
+
+    private volatile boolean executed;
+
+    private volatile boolean canceled;
+
+    RetryingCall(Call<T> original, RetryPolicy retryPolicy, ScheduledExecutorService scheduler) {
+        this.original = original;
+        this.retryPolicy = retryPolicy;
+        this.scheduler = scheduler;
+    }
+
+    @Override
+    public Response<T> execute() throws IOException {
+        synchronized (this) {
+            if (executed) {
+                throw new IllegalStateException("Already executed.");
+            }
+            executed = true;
+        }
+        Request request = original.request();
+        String hostName = request.url()
+                                 .host();
+        RetryPolicy.Host host = retryPolicy.host(hostName);
+        host.metrics.requests.incrementAndGet();
+        long startedAt = System.currentTimeMillis();
+        // The call timeout spans every attempt, each retry is given what is left of it
+        long timeoutNanos = timeout().timeoutNanos();
+        long deadlineNanos = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+        for (int attempt = 1; ; attempt++) {
+            if (canceled) {
+                throw new IOException("Canceled");
+            }
+            try {
+                retryPolicy.beforeAttempt(host, hostName);
+            } catch (FdkCircuitOpen e) {
+                host.metrics.failures.incrementAndGet();
+                throw e;
+            }
+            Call<T> next = attempt == 1 ? original : original.clone();
+            if (attempt > 1 && deadlineNanos > 0) {
+                next.timeout()
+                    .timeout(Math.max(1, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+            }
+            current = next;
+            Response<T> response;
+            try {
+                response = next.execute();
+            } catch (IOException e) {
+                long delay = retryDelay(request, host, attempt, startedAt, deadlineNanos);
+                if (delay < 0) {
+                    host.metrics.failures.incrementAndGet();
+                    throw e;
+                }
+                sleep(delay, request);
+                continue;
+            } catch (RuntimeException e) {
+                retryPolicy.onAbort(host);
+                host.metrics.failures.incrementAndGet();
+                throw e;
+            }
+            if (!retryPolicy.isRetryableStatus(response.code())) {
+                retryPolicy.onSuccess(host);
+                return response;
+            }
+            long delay = retryDelay(request, host, attempt, startedAt, deadlineNanos);
+            if (delay < 0) {
+                host.metrics.failures.incrementAndGet();
+                return response;
+            }
+            if (response.errorBody() != null) {
+                response.errorBody()
+                        .close();
+            }
+            sleep(delay, request);
+        }
+    }
+
+    private void sleep(long delay, Request request) throws IOException {
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new InterruptedIOException("Interrupted while retrying " + request.url());
+        }
+    }
+
+    @Override
+    public void enqueue(Callback<T> callback) {
+        synchronized (this) {
+            if (executed) {
+                throw new IllegalStateException("Already executed.");
+            }
+            executed = true;
+        }
+        Request request = original.request();
+        String hostName = request.url()
+                                 .host();
+        RetryPolicy.Host host = retryPolicy.host(hostName);
+        host.metrics.requests.incrementAndGet();
+        attempt(callback, request, hostName, host, 1, System.currentTimeMillis());
+    }
+
+    private void attempt(Callback<T> callback, Request request, String hostName, RetryPolicy.Host host, int attempt,
+                         long startedAt) {
+        if (canceled) {
+            callback.onFailure(this, new IOException("Canceled"));
+            return;
+        }
+        try {
+            retryPolicy.beforeAttempt(host, hostName);
+        } catch (FdkCircuitOpen e) {
+            host.metrics.failures.incrementAndGet();
+            callback.onFailure(this, e);
+            return;
+        }
+        Call<T> next = attempt == 1 ? original : original.clone();
+        current = next;
+        try {
+            enqueue(next, callback, request, hostName, host, attempt, startedAt);
+        } catch (RuntimeException e) {
+            retryPolicy.onAbort(host);
+            host.metrics.failures.incrementAndGet();
+            callback.onFailure(this, e);
+        }
+    }
+
+    private void enqueue(Call<T> next, Callback<T> callback, Request request, String hostName, RetryPolicy.Host host,
+                         int attempt, long startedAt) {
+        next.enqueue(new Callback<>() {
+            @Override
+            public void onResponse(Call<T> call, Response<T> response) {
+                if (!retryPolicy.isRetryableStatus(response.code())) {
+                    retryPolicy.onSuccess(host);
+                    callback.onResponse(RetryingCall.this, response);
+                    return;
+                }
+                if (!retryLater(callback, request, hostName, host, attempt, startedAt, response)) {
+                    host.metrics.failures.incrementAndGet();
+                    callback.onResponse(RetryingCall.this, response);
+                }
+            }
+
+            @Override
+            public void onFailure(Call<T> call, Throwable t) {
+                if (!retryLater(callback, request, hostName, host, attempt, startedAt, null)) {
+                    host.metrics.failures.incrementAndGet();
+                    callback.onFailure(RetryingCall.this, t);
+                }
+            }
+        });
+    }
+
+    private boolean retryLater(Callback<T> callback, Request request, String hostName, RetryPolicy.Host host,
+                               int attempt, long startedAt, Response<T> response) {
+        long delay = retryDelay(request, host, attempt, startedAt, 0);
+        if (delay < 0) {
+            return false;
+        }
+        try {
+            scheduledRetry = scheduler.schedule(
+                    () -> attempt(callback, request, hostName, host, attempt + 1, startedAt), delay,
+                    TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+        if (response != null && response.errorBody() != null) {
+            response.errorBody()
+                    .close();
+        }
+        return true;
+    }
+
+    // Returns -1 when the attempt is not retried, also when the retry would start past the call deadline
+    private long retryDelay(Request request, RetryPolicy.Host host, int attempt, long startedAt,
+                            long deadlineNanos) {
+        long delay = retryPolicy.onFailure(request, host, attempt, startedAt);
+        if (delay < 0 || canceled || (deadlineNanos > 0
+                && System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay) >= deadlineNanos)) {
+            return -1;
+        }
+        log.info("Retrying {} {} after {}ms. Attempt: {}", request.method(), request.url()
+                                                                               .encodedPath(), delay, attempt + 1);
+        return delay;
+    }
+
+    @Override
+    public boolean isExecuted() {
+        return executed;
+    }
+
+    @Override
+    public void cancel() {
+        canceled = true;
+        Future<?> retry = scheduledRetry;
+        if (retry != null) {
+            retry.cancel(false);
+        }
+        Call<T> call = current;
+        (call != null ? call : original).cancel();
+    }
+
+    @Override
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    @Override
+    public Call<T> clone() {
+        return new RetryingCall<>(original.clone(), retryPolicy, scheduler);
+    }
+
+    @Override
+    public Request request() {
+        return original.request();
+    }
+
+    @Override
+    public Timeout timeout() {
+        return original.timeout();
+    }
+}
@@ -0,0 +1,38 @@
+package com.fynd.extension.middleware;
+
+/**
+ * One webhook delivery of a batch handed to a {@link BatchEventHandler}.
+ */
+public class WebhookEvent {
+
+    private final String eventName;
+
+    private final String companyId;
+
+    private final String applicationId;
+
+    private final WebhookPayload payload;
+
+    public WebhookEvent(String eventName, String companyId, String applicationId, WebhookPayload payload) {
+        this.eventName = eventName;
+        this.companyId = companyId;
+        this.applicationId = applicationId;
+        this.payload = payload;
+    }
+
+    public String getEventName() {
+        return eventName;
+    }
+
+    public String getCompanyId() {
+        return companyId;
+    }
+
+    public String getApplicationId() {
+        return applicationId;
+    }
+
+    public WebhookPayload getPayload() {
+        return payload;
+    }
+}
@@ -0,0 +1,81 @@
+package com.fynd.extension.middleware;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Body of a webhook delivery, kept as the raw bytes it arrived as. Each view of it is built the first time
+ * it is asked for, so a handler pays only for the one it uses.
+ */
+public class WebhookPayload {
+
+    private final byte[] bytes;
+
+    private final int length;
+
+    private final ObjectMapper objectMapper;
+
+    private volatile JsonNode jsonNode;
+
+    private volatile JSONObject jsonObject;
+
+    public WebhookPayload(byte[] bytes, int length, ObjectMapper objectMapper) {
+        this.bytes = bytes;
+        this.length = length;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Copy of the body as received.
+     */
+    public byte[] getBytes() {
+        return Arrays.copyOf(bytes, length);
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    public String asString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+
+    public JsonNode asJsonNode() {
+        JsonNode node = jsonNode;
+        if (node == null) {
+            try {
+                node = objectMapper.readTree(bytes, 0, length);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            jsonNode = node;
+        }
+        return node;
+    }
+
+    public <T> T as(Class<T> type) {
+        try {
+            return objectMapper.readValue(bytes, 0, length, type);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The body as handed to {@link EventHandler#handle(String, Object, String, String)}.
+     */
+    public JSONObject asJSONObject() {
+        JSONObject object = jsonObject;
+        if (object == null) {
+            object = new JSONObject(asString());
+            jsonObject = object;
+        }
+        return object;
+    }
+}
@@ -0,0 +1,97 @@
+package com.fynd.extension.model;
+
+import com.sdk.common.model.AccessTokenDto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Bounded, least recently used cache of API clients and their configs, keyed by company (or organization)
+ * and session.
+ * <p>
+ * Each entry remembers the access token its client was built with, so that callers can detect a renewed
+ * token and replace the entry with a client built for it. Clients and configs are never updated in place,
+ * another thread may be using them.
+ */
+class ClientCache<C, P> {
+
+    private final int maxEntries;
+
+    private final LinkedHashMap<String, Entry<C, P>> entries;
+
+    ClientCache(int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry<C, P>> eldest) {
+                return size() > ClientCache.this.maxEntries;
+            }
+        };
+    }
+
+    boolean isEnabled() {
+        return maxEntries > 0;
+    }
+
+    synchronized Entry<C, P> get(String ownerId, String sessionId) {
+        return entries.get(key(ownerId, sessionId));
+    }
+
+    synchronized Entry<C, P> put(String ownerId, String sessionId, C client, P config, String accessToken,
+                                 AccessTokenDto renewedToken) {
+        Entry<C, P> entry = new Entry<>(ownerId, sessionId, client, config, accessToken);
+        entry.renewedToken = renewedToken;
+        if (isEnabled()) {
+            entries.put(key(ownerId, sessionId), entry);
+        }
+        return entry;
+    }
+
+    synchronized void evictOwner(String ownerId) {
+        entries.values()
+               .removeIf(entry -> Objects.equals(entry.ownerId, ownerId));
+    }
+
+    synchronized void evictSession(String sessionId) {
+        entries.values()
+               .removeIf(entry -> Objects.equals(entry.sessionId, sessionId));
+    }
+
+    synchronized void clear() {
+        entries.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static String key(String ownerId, String sessionId) {
+        return ownerId + ":" + sessionId;
+    }
+
+    static final class Entry<C, P> {
+
+        final String ownerId;
+
+        final String sessionId;
+
+        final C client;
+
+        final P config;
+
+        // Access token the client was built with
+        final String accessToken;
+
+        // Last token renewed for the session, handed to callers still holding the session read before it
+        volatile AccessTokenDto renewedToken;
+
+        Entry(String ownerId, String sessionId, C client, P config, String accessToken) {
+            this.ownerId = ownerId;
+            this.sessionId = sessionId;
+            this.client = client;
+            this.config = config;
+            this.accessToken = accessToken;
+        }
+    }
+}
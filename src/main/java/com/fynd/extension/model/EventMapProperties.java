@@ -33,4 +33,11 @@ public class EventMapProperties {
 
     private Map<String, Object> reducer;
 
+    // Used when the handler is a BatchEventHandler, a batch is handed over when full or lingerMs after its first event
+    private int batchSize = 100;
+
+    private long lingerMs = 1000;
+
+    private int batchMaxAttempts = 5;
+
 }
@@ -6,19 +6,22 @@ import com.fynd.extension.middleware.AccessMode;
 import com.fynd.extension.middleware.ClientCall;
 import com.fynd.extension.middleware.ExtensionInterceptor;
 import com.fynd.extension.middleware.FdkConstants;
-import com.fynd.extension.middleware.RetryInterceptor;
+import com.fynd.extension.middleware.HttpTransport;
 import com.fynd.extension.service.WebhookService;
+import com.fynd.extension.session.OfflineTokenRefresher;
 import com.fynd.extension.session.Session;
 import com.fynd.extension.session.SessionStorage;
+import com.fynd.extension.storage.AsyncStorage;
+import com.fynd.extension.storage.AsyncStorageAdapter;
 import com.fynd.extension.storage.BaseStorage;
 import com.sdk.common.RequestSignerInterceptor;
-import com.sdk.common.RetrofitServiceFactory;
 import com.sdk.common.model.AccessTokenDto;
 import com.sdk.partner.PartnerClient;
 import com.sdk.platform.PlatformClient;
 import com.sdk.platform.PlatformConfig;
 import com.sdk.partner.PartnerConfig;
 
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -36,6 +39,9 @@ import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
 import java.net.URL;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static com.fynd.extension.controllers.ExtensionController.Fields.DELIMITER;
 
@@ -49,15 +55,40 @@ public class Extension {
 
     BaseStorage storage;
 
+    AsyncStorage asyncStorage;
+
     ExtensionCallback callbacks;
 
     WebhookService webhookService;
 
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    ClientCache<PlatformClient, PlatformConfig> platformClientCache = new ClientCache<>(
+            ExtensionProperties.DEFAULT_CLIENT_CACHE_SIZE);
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    ClientCache<PartnerClient, PartnerConfig> partnerClientCache = new ClientCache<>(
+            ExtensionProperties.DEFAULT_CLIENT_CACHE_SIZE);
+
     @Value("${fdk-extension.version}")
     String buildVersion;
 
     boolean isInitialized;
 
+    @Setter(AccessLevel.NONE)
+    OfflineTokenRefresher offlineTokenRefresher;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    final Map<String, CompletableFuture<AccessTokenDto>> tokenRenewals = new ConcurrentHashMap<>();
+
+    private static final String TOKEN_RENEWAL_LEASE_PREFIX = "token_renewal_lease:";
+
+    private static final long LEASE_POLL_INTERVAL_MS = 100;
+
+    private static final long MAX_LEASE_WAIT_MS = 2000;
+
     public Extension initialize(ExtensionProperties extensionProperties, BaseStorage storage,
                                 ExtensionCallback callbacks) {
         Extension extension = new Extension();
@@ -81,6 +112,13 @@ public class Extension {
                     "Missing some of callbacks. Please add all , auth, install and uninstall callbacks.");
         }
         extension.setCallbacks(callbacks);
+        extension.platformClientCache = new ClientCache<>(extensionProperties.getClientCacheSize());
+        extension.partnerClientCache = new ClientCache<>(extensionProperties.getClientCacheSize());
+        if (extensionProperties.getTokenRefresh()
+                               .isEnabled()) {
+            extension.offlineTokenRefresher = new OfflineTokenRefresher(extension,
+                                                                        extensionProperties.getTokenRefresh());
+        }
         extensionProperties.setAccessMode(StringUtils.isEmpty(
                 extensionProperties.getAccessMode()) ? AccessMode.OFFLINE.getName() : extensionProperties.getAccessMode());
 
@@ -128,6 +166,17 @@ public class Extension {
         return extension;
     }
 
+    /**
+     * Non-blocking access to the storage for extension code. A storage not implementing {@link AsyncStorage}
+     * is run on an {@link AsyncStorageAdapter}, whose threads are stopped by {@link #close()}.
+     */
+    public synchronized AsyncStorage getAsyncStorage() {
+        if (Objects.isNull(asyncStorage) && Objects.nonNull(storage)) {
+            asyncStorage = storage instanceof AsyncStorage ? (AsyncStorage) storage : new AsyncStorageAdapter(storage);
+        }
+        return asyncStorage;
+    }
+
     public static boolean isValid(String url) {
         try {
             new URL(url).toURI();
@@ -139,13 +188,12 @@ public class Extension {
 
     public Response<ExtensionDetailsDTO> getExtensionDetails(
             ExtensionProperties extensionProperties) throws IOException {
-        RetrofitServiceFactory retrofitServiceFactory = new RetrofitServiceFactory();
         List<Interceptor> interceptorList = new ArrayList<>();
-        interceptorList.add(new ExtensionInterceptor(extensionProperties));
+        interceptorList.add(ExtensionInterceptor.forProperties(extensionProperties));
         interceptorList.add(new RequestSignerInterceptor());
-        interceptorList.add(new RetryInterceptor());
-        ClientCall clientCall = retrofitServiceFactory.createService(extensionProperties.getCluster(), ClientCall.class,
-                                                                     interceptorList);
+        ClientCall clientCall = HttpTransport.getInstance(extensionProperties.getHttp())
+                                             .createRetryingService(extensionProperties.getCluster(),
+                                                                    ClientCall.class, interceptorList);
         return clientCall.getExtensionDetails(extensionProperties.getApiKey())
                          .execute();
     }
@@ -210,40 +258,77 @@ public class Extension {
         return Objects.equals(this.extensionProperties.getAccessMode(), AccessMode.ONLINE.getName());
     }
 
+    /**
+     * Returns the platform client of the session. Clients are cached per company and session. A client and
+     * its config are never changed once built, a session bringing another access token gets a new client
+     * while callers still holding the previous one keep using it undisturbed.
+     */
     public PlatformClient getPlatformClient(String companyId, Session session) {
+        return getPlatformClient(companyId, session, false);
+    }
+
+    private PlatformClient getPlatformClient(String companyId, Session session, boolean forceRenewal) {
         if (!this.isInitialized) {
             throw new FdkInvalidExtensionConfig("Extension not initialized due to invalid data");
         }
-        PlatformConfig platformConfig = this.getPlatformConfig(companyId);
-        AccessTokenDto accessTokenDto = buildAccessToken(session);
-        platformConfig.getPlatformOauthClient()
-                      .setToken(accessTokenDto);
-        platformConfig.getPlatformOauthClient()
-                      .setTokenExpiresAt(session.getAccessTokenValidity());
-        if (Objects.nonNull(session.getAccessTokenValidity()) && Objects.nonNull(session.getRefreshToken())) {
-            boolean acNrExpired = ((session.getAccessTokenValidity() - new Date().getTime()) / 1000) <= 120;
-            if (acNrExpired) {
-                try {
-                    log.debug("Renewing access token for company {} with platform config {}", companyId,
-                              platformConfig);
-                    AccessTokenDto renewTokenRes = platformConfig.getPlatformOauthClient()
-                                                                 .renewAccesstoken();
-                    renewTokenRes.setAccessTokenValidity(platformConfig.getPlatformOauthClient()
-                                                                       .getTokenExpiresAt());
-                    Session.updateToken(renewTokenRes, session);
-                    SessionStorage sessionStorage = new SessionStorage();
-                    sessionStorage.saveSession(session, this);
-                    log.info("Access token renewed for company : " + companyId);
-                } catch (Exception e) {
-                    log.error("Exception occurred in renewing access token ", e);
-                }
-            }
+        ClientCache.Entry<PlatformClient, PlatformConfig> cached = platformClientCache.get(companyId, session.getId());
+        if (Objects.nonNull(cached)) {
+            adoptRenewedToken(cached, session);
+        }
+        if (forceRenewal || isAccessTokenNearExpiry(session)) {
+            log.debug("Renewing access token for company {}", companyId);
+            renewAccessToken("company", companyId, session, cached, () -> {
+                // Renewed on a config of its own, the oauth client of a cached config is never touched
+                PlatformConfig platformConfig = this.getPlatformConfig(companyId);
+                setToken(platformConfig, session);
+                AccessTokenDto renewTokenRes = platformConfig.getPlatformOauthClient()
+                                                             .renewAccesstoken();
+                renewTokenRes.setAccessTokenValidity(platformConfig.getPlatformOauthClient()
+                                                                   .getTokenExpiresAt());
+                return renewTokenRes;
+            });
+        }
+        if (Objects.isNull(cached) || !Objects.equals(cached.accessToken, session.getAccessToken())) {
+            PlatformConfig platformConfig = this.getPlatformConfig(companyId);
+            setToken(platformConfig, session);
+            PlatformClient platformClient = new PlatformClient(platformConfig);
+            platformClient.setExtraHeader("x-ext-lib-version", "java/" + buildVersion);
+            cached = platformClientCache.put(companyId, session.getId(), platformClient, platformConfig,
+                                             session.getAccessToken(), renewedToken(cached));
         }
-        PlatformClient platformClient = new PlatformClient(platformConfig);
+        return cached.client;
+    }
+
+    /**
+     * Drops the cached platform and partner clients of a company or organization, e.g. on uninstall.
+     */
+    public void evictClients(String ownerId) {
+        platformClientCache.evictOwner(ownerId);
+        partnerClientCache.evictOwner(ownerId);
+    }
 
-        platformClient.setExtraHeader("x-ext-lib-version", "java/" + buildVersion);
+    /**
+     * Drops the cached platform and partner clients built for a session.
+     */
+    public void evictSessionClients(String sessionId) {
+        platformClientCache.evictSession(sessionId);
+        partnerClientCache.evictSession(sessionId);
+    }
 
-        return platformClient;
+    /**
+     * Switches the extension to a new api key and secret at runtime. {@link ExtensionInterceptor}s pick them up
+     * on their next request, cached platform and partner clients are dropped as their configs hold the old
+     * secret.
+     */
+    public void rotateCredentials(String apiKey, String apiSecret) {
+        if (StringUtils.isEmpty(apiKey) || StringUtils.isEmpty(apiSecret)) {
+            throw new FdkInvalidExtensionConfig("Invalid apiKey or apiSecret");
+        }
+        ExtensionInterceptor.forProperties(this.extensionProperties)
+                            .rotateCredentials(apiKey, apiSecret);
+        platformClientCache.clear();
+        partnerClientCache.clear();
+        log.info("Extension credentials rotated");
     }
 
     public PlatformConfig getPlatformConfig(String companyId) {
@@ -269,42 +354,232 @@ public class Extension {
     }
 
     public PartnerClient getPartnerClient(String organizationId, Session session){
+        return getPartnerClient(organizationId, session, false);
+    }
+
+    private PartnerClient getPartnerClient(String organizationId, Session session, boolean forceRenewal) {
         if (!this.isInitialized) {
             throw new FdkInvalidExtensionConfig("Extension not initialized due to invalid data");
         }
 
-        PartnerConfig partnerConfig = this.getPartnerConfig(organizationId);
+        ClientCache.Entry<PartnerClient, PartnerConfig> cached = partnerClientCache.get(organizationId, session.getId());
+        if (Objects.nonNull(cached)) {
+            adoptRenewedToken(cached, session);
+        }
 
-        AccessTokenDto accessTokenDto = buildAccessToken(session);
+        if (forceRenewal || isAccessTokenNearExpiry(session)) {
+            log.debug("Renewing access token for organization {}", organizationId);
+            renewAccessToken("organization", organizationId, session, cached, () -> {
+                PartnerConfig partnerConfig = this.getPartnerConfig(organizationId);
+                setToken(partnerConfig, session);
+                AccessTokenDto renewTokenRes = partnerConfig.getPartnerOauthClient()
+                        .renewAccesstoken();
+                renewTokenRes.setAccessTokenValidity(partnerConfig.getPartnerOauthClient()
+                        .getTokenExpiresAt());
+                return renewTokenRes;
+            });
+        }
+        if (Objects.isNull(cached) || !Objects.equals(cached.accessToken, session.getAccessToken())) {
+            PartnerConfig partnerConfig = this.getPartnerConfig(organizationId);
+            setToken(partnerConfig, session);
+            PartnerClient partnerClient = new PartnerClient(partnerConfig);
+            partnerClient.setExtraHeader("x-ext-lib-version", "java/" + buildVersion);
+            cached = partnerClientCache.put(organizationId, session.getId(), partnerClient, partnerConfig,
+                                            session.getAccessToken(), renewedToken(cached));
+        }
 
-        partnerConfig.getPartnerOauthClient().setToken(accessTokenDto);
-        partnerConfig.getPartnerOauthClient().setTokenExpiresAt(session.getAccessTokenValidity());
+        return cached.client;
+    }
+
+    /**
+     * Renews the access token of an offline session ahead of its expiry and saves the renewed session.
+     * Used by {@link OfflineTokenRefresher}, returns whether the session now holds a renewed token.
+     */
+    public boolean refreshOfflineToken(Session session) {
+        Long validity = session.getAccessTokenValidity();
+        if (Objects.nonNull(session.getCompanyId())) {
+            getPlatformClient(session.getCompanyId(), session, true);
+        } else if (Objects.nonNull(session.getOrganizationId())) {
+            getPartnerClient(session.getOrganizationId(), session, true);
+        } else {
+            return false;
+        }
+        return !Objects.equals(validity, session.getAccessTokenValidity());
+    }
+
+    /**
+     * Stops the background work of the extension. Called by Spring on shutdown when the extension is a bean.
+     */
+    public void close() {
+        if (Objects.nonNull(offlineTokenRefresher)) {
+            offlineTokenRefresher.close();
+        }
+        synchronized (this) {
+            if (asyncStorage instanceof AsyncStorageAdapter) {
+                ((AsyncStorageAdapter) asyncStorage).close();
+            }
+        }
+    }
 
-        if (Objects.nonNull(session.getAccessTokenValidity()) && Objects.nonNull(session.getRefreshToken())) {
-            boolean acNrExpired = ((session.getAccessTokenValidity() - new Date().getTime()) / 1000) <= 120;
-            if (acNrExpired) {
+    private boolean isAccessTokenNearExpiry(Session session) {
+        return Objects.nonNull(session.getAccessTokenValidity()) && Objects.nonNull(session.getRefreshToken())
+                && ((session.getAccessTokenValidity() - new Date().getTime()) / 1000) <= 120;
+    }
+
+    private static AccessTokenDto renewedToken(ClientCache.Entry<?, ?> cached) {
+        return Objects.nonNull(cached) ? cached.renewedToken : null;
+    }
+
+    // A caller may still hold the session as read before the last renewal, it gets the renewed token
+    private void adoptRenewedToken(ClientCache.Entry<?, ?> cached, Session session) {
+        AccessTokenDto renewedToken = cached.renewedToken;
+        if (Objects.nonNull(renewedToken) && Objects.nonNull(renewedToken.getAccessTokenValidity())
+                && Objects.nonNull(session.getAccessTokenValidity())
+                && renewedToken.getAccessTokenValidity() > session.getAccessTokenValidity()) {
+            Session.updateToken(renewedToken, session);
+        }
+    }
+
+    /**
+     * Renews the access token of a session once for all concurrent callers on this node. With
+     * {@code tokenRenewalLeaseSeconds} set, a lease in the storage also keeps other nodes from renewing
+     * the same session at the same time, they pick up the renewed session from the storage instead.
+     * The session is left as is when the token was not renewed.
+     */
+    private void renewAccessToken(String ownerType, String ownerId, Session session, ClientCache.Entry<?, ?> cached,
+                                  Callable<AccessTokenDto> renewer) {
+        CompletableFuture<AccessTokenDto> renewal = new CompletableFuture<>();
+        CompletableFuture<AccessTokenDto> inFlight = tokenRenewals.putIfAbsent(session.getId(), renewal);
+        try {
+            AccessTokenDto renewedToken;
+            if (Objects.nonNull(inFlight)) {
+                renewedToken = inFlight.join();
+            } else {
                 try {
-                    log.debug("Renewing access token for organization {} with partner config {}", organizationId,
-                            partnerConfig);
-                    AccessTokenDto renewTokenRes = partnerConfig.getPartnerOauthClient()
-                            .renewAccesstoken();
-                    renewTokenRes.setAccessTokenValidity(partnerConfig.getPartnerOauthClient()
-                            .getTokenExpiresAt());
-                    Session.updateToken(renewTokenRes, session);
-                    SessionStorage sessionStorage = new SessionStorage();
-                    sessionStorage.saveSession(session, this);
-                    log.info("Access token renewed for organization : " + organizationId);
+                    renewedToken = renewWithLease(session, renewer);
+                    renewal.complete(renewedToken);
                 } catch (Exception e) {
-                    log.error("Exception occurred in renewing access token ", e);
+                    renewal.completeExceptionally(e);
+                    throw e;
+                } finally {
+                    tokenRenewals.remove(session.getId(), renewal);
+                }
+                if (Objects.nonNull(renewedToken)) {
+                    log.info("Access token renewed for " + ownerType + " : " + ownerId);
+                }
+            }
+            if (Objects.isNull(renewedToken)) {
+                return;
+            }
+            Session.updateToken(renewedToken, session);
+            if (Objects.nonNull(cached)) {
+                cached.renewedToken = renewedToken;
+            }
+        } catch (Exception e) {
+            log.error("Exception occurred in renewing access token ", e);
+        }
+    }
+
+    // Returns null when the token was not renewed: another node holds the lease and has not saved a renewed
+    // session yet
+    private AccessTokenDto renewWithLease(Session session, Callable<AccessTokenDto> renewer) throws Exception {
+        SessionStorage sessionStorage = new SessionStorage();
+        int leaseSeconds = this.extensionProperties.getTokenRenewalLeaseSeconds();
+        String leaseKey = TOKEN_RENEWAL_LEASE_PREFIX + session.getId();
+        String leaseOwner = UUID.randomUUID()
+                                .toString();
+        Boolean leased = leaseSeconds > 0 ? acquireLease(leaseKey, leaseOwner, leaseSeconds) : null;
+        if (Boolean.FALSE.equals(leased)) {
+            AccessTokenDto renewedElsewhere = awaitRenewedSession(sessionStorage, session, leaseSeconds);
+            if (Objects.nonNull(renewedElsewhere)) {
+                return renewedElsewhere;
+            }
+            if (Objects.nonNull(session.getAccessTokenValidity())
+                    && session.getAccessTokenValidity() > new Date().getTime()) {
+                // Still valid, the node holding the lease renews it, this request goes on with it
+                return null;
+            }
+            // The token expired while the lease is held, renewed here only if the lease can be taken over
+            leased = acquireLease(leaseKey, leaseOwner, leaseSeconds);
+            if (!Boolean.TRUE.equals(leased)) {
+                log.warn("Token renewal lease for session {} is still held, token not renewed", session.getId());
+                return null;
+            }
+        }
+        try {
+            if (Boolean.TRUE.equals(leased)) {
+                // The session may have been renewed by another node between our read and the lease
+                AccessTokenDto renewedElsewhere = findRenewedSession(sessionStorage, session);
+                if (Objects.nonNull(renewedElsewhere)) {
+                    return renewedElsewhere;
                 }
             }
+            AccessTokenDto renewedToken = renewer.call();
+            Session.updateToken(renewedToken, session);
+            // Saved before returning, so nodes waiting on the lease and requests reading the session next find
+            // the renewed token, and a rotated refresh token is never lost
+            sessionStorage.saveSession(session, this);
+            return renewedToken;
+        } finally {
+            if (Boolean.TRUE.equals(leased)) {
+                releaseLease(leaseKey, leaseOwner);
+            }
+        }
+    }
+
+    // Returns null when the storage cannot hold leases, the renewal then only coalesces within this node
+    private Boolean acquireLease(String leaseKey, String leaseOwner, int leaseSeconds) {
+        try {
+            return storage.setnx(leaseKey, leaseOwner, leaseSeconds);
+        } catch (RuntimeException e) {
+            log.warn("Storage does not support token renewal leases", e);
+            return null;
+        }
+    }
+
+    // Deletes the lease only while this node still owns it, an expired lease may belong to another node
+    private void releaseLease(String leaseKey, String leaseOwner) {
+        try {
+            storage.delIfEquals(leaseKey, leaseOwner);
+        } catch (RuntimeException e) {
+            log.warn("Failed to release token renewal lease {}, it expires on its own", leaseKey, e);
+        }
+    }
+
+    // Waits a fraction of the lease at most, the request thread must not hang on a node that died renewing
+    private AccessTokenDto awaitRenewedSession(SessionStorage sessionStorage, Session session, int leaseSeconds)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + Math.min(leaseSeconds * 1000L / 4, MAX_LEASE_WAIT_MS);
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(LEASE_POLL_INTERVAL_MS);
+            AccessTokenDto renewedToken = findRenewedSession(sessionStorage, session);
+            if (Objects.nonNull(renewedToken)) {
+                return renewedToken;
+            }
         }
+        return null;
+    }
 
-        PartnerClient partnerClient = new PartnerClient(partnerConfig);
+    private AccessTokenDto findRenewedSession(SessionStorage sessionStorage, Session session) {
+        Session stored = sessionStorage.getSession(session.getId(), this);
+        if (Objects.nonNull(stored) && Objects.nonNull(stored.getAccessTokenValidity())
+                && Objects.nonNull(session.getAccessTokenValidity())
+                && stored.getAccessTokenValidity() > session.getAccessTokenValidity()) {
+            return buildAccessToken(stored);
+        }
+        return null;
+    }
 
-        partnerClient.setExtraHeader("x-ext-lib-version", "java/" + buildVersion);
+    private void setToken(PlatformConfig platformConfig, Session session) {
+        platformConfig.getPlatformOauthClient()
+                      .setToken(buildAccessToken(session));
+        platformConfig.getPlatformOauthClient()
+                      .setTokenExpiresAt(session.getAccessTokenValidity());
+    }
 
-        return partnerClient;
+    private void setToken(PartnerConfig partnerConfig, Session session) {
+        partnerConfig.getPartnerOauthClient().setToken(buildAccessToken(session));
+        partnerConfig.getPartnerOauthClient().setTokenExpiresAt(session.getAccessTokenValidity());
     }
 
     private AccessTokenDto buildAccessToken(Session session) {
@@ -28,6 +28,18 @@ public class ExtensionProperties {
 
     private WebhookProperties webhook;
 
+    private HttpProperties http = new HttpProperties();
+
+    private TokenRefreshProperties tokenRefresh = new TokenRefreshProperties();
+
+    // When set, a storage lease makes a single node renew an access token, 0 only coalesces within a node
+    private int tokenRenewalLeaseSeconds;
+
+    // Platform and partner clients kept per company and session, 0 builds a new client on every call
+    private int clientCacheSize = DEFAULT_CLIENT_CACHE_SIZE;
+
+    static final int DEFAULT_CLIENT_CACHE_SIZE = 1000;
+
     // Default cluster value
     private static final String DEFAULT_CLUSTER = "https://api.fynd.com";
 
@@ -0,0 +1,28 @@
+package com.fynd.extension.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class HttpProperties {
+
+    private int maxIdleConnections = 20;
+
+    private long keepAliveSeconds = 300;
+
+    private int maxRequests = 64;
+
+    private int maxRequestsPerHost = 16;
+
+    private long connectTimeoutMs = 10000;
+
+    private long readTimeoutMs = 30000;
+
+    private long writeTimeoutMs = 30000;
+
+    // HTTP/2 is negotiated through ALPN on TLS connections, HTTP/1.1 is used when the server does not offer it
+    private boolean http2 = true;
+
+    private RetryProperties retry = new RetryProperties();
+}
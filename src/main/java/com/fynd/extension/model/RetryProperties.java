@@ -0,0 +1,29 @@
+package com.fynd.extension.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class RetryProperties {
+
+    // Attempts per request including the first one, 1 disables retries
+    private int maxAttempts = 4;
+
+    // Time after which a failed request is not retried any more, counted from its first attempt
+    private long deadlineMs = 60000;
+
+    private long baseDelayMs = 500;
+
+    private long maxDelayMs = 15000;
+
+    // Retries a host can make in a burst, every successful attempt earns back budgetRatio of a retry
+    private int budgetTokens = 10;
+
+    private double budgetRatio = 0.1;
+
+    // Consecutive failures that open the circuit of a host, it fails fast until circuitOpenMs have passed
+    private int circuitFailureThreshold = 5;
+
+    private long circuitOpenMs = 30000;
+}
@@ -0,0 +1,21 @@
+package com.fynd.extension.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class TokenRefreshProperties {
+
+    // Renews offline access tokens in the background instead of on the request that finds them near expiry
+    private boolean enabled;
+
+    private long leadSeconds = 300;
+
+    // Spreads renewals of tokens issued together over this many seconds before the lead time
+    private long jitterSeconds = 60;
+
+    private int concurrency = 4;
+
+    private long retryDelaySeconds = 30;
+}
@@ -0,0 +1,24 @@
+package com.fynd.extension.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class WebhookDedupeProperties {
+
+    // Skips deliveries of an event already handled, by event id, trace id or body hash
+    private boolean enabled;
+
+    // How long a handled event is remembered
+    private int ttlSeconds = 86400;
+
+    // How long an event being handled stays claimed, in case its node never finishes it
+    private int processingTtlSeconds = 300;
+
+    // Events remembered in-process, the least recently seen are forgotten first
+    private int localMaxEntries = 100000;
+
+    // Also remembers events in the extension's storage, so a redelivery to another node is skipped too
+    private boolean distributed = true;
+}
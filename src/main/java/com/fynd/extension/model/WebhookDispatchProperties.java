@@ -0,0 +1,29 @@
+package com.fynd.extension.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class WebhookDispatchProperties {
+
+    public static final String REJECT = "reject";
+
+    public static final String CALLER_RUNS = "caller_runs";
+
+    // Runs handlers on a pool after the signature is verified, so the webhook call returns right away. The
+    // event is acknowledged before its handler runs, a handler failure is not redelivered
+    private boolean async;
+
+    private int threads = 8;
+
+    private int queueCapacity = 1000;
+
+    // Deliveries of one handler queued or running at once, 0 for no limit
+    private int handlerConcurrency;
+
+    // What happens to a delivery when the queue or its handler's limit is full, reject or caller_runs
+    private String rejectionPolicy = REJECT;
+
+    private long drainTimeoutSeconds = 30;
+}
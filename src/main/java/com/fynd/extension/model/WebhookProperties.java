@@ -22,6 +22,17 @@ public class WebhookProperties {
 
     private Boolean marketplace;
 
+    /**
+     * Largest webhook body accepted, in bytes.
+     */
+    private int maxBodySize = 4 * 1024 * 1024;
+
+    private WebhookDispatchProperties dispatch = new WebhookDispatchProperties();
+
+    private WebhookDedupeProperties dedupe = new WebhookDedupeProperties();
+
+    private WebhookSyncProperties sync = new WebhookSyncProperties();
+
     public String getSubscribedSalesChannel() {
         return subscribedSalesChannel;
     }
@@ -0,0 +1,25 @@
+package com.fynd.extension.model;
+
+import lombok.Getter;
+import lombok.Setter;
+
+@Getter
+@Setter
+public class WebhookSyncProperties {
+
+    // Companies synced at once by a bulk sync
+    private int parallelism = 8;
+
+    // Time one attempt for a company may take, its calls to the platform fail once it is spent. Storage
+    // calls are not bounded by it
+    private int timeoutSeconds = 60;
+
+    // Attempts per company, a failed or timed out attempt is retried with exponential backoff
+    private int maxAttempts = 3;
+
+    // Delay before the first retry, doubled on every following one
+    private long retryDelayMs = 1000;
+
+    // How long a company synced with the current config is trusted to stay in sync, 0 always syncs
+    private int stampTtlSeconds = 3600;
+}
@@ -0,0 +1,278 @@
+package com.fynd.extension.service;
+
+import com.fynd.extension.middleware.BatchEventHandler;
+import com.fynd.extension.middleware.WebhookEvent;
+import com.fynd.extension.model.EventMapProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Collects webhook events for {@link BatchEventHandler}s, per handler, event name and company, and hands
+ * each batch over once it is full or has lingered long enough.
+ * <p>
+ * Batches are handled on a small pool. When its queue is full the request thread handles the batch
+ * itself, which slows deliveries down instead of buffering without bound. Batches handed over by the timer,
+ * after lingering or for a retry, wait for room in the queue instead, so the timer is never held up by a
+ * handler. A failed batch is retried with exponential backoff until its attempts run out, then dropped and
+ * logged.
+ */
+@Slf4j
+public class WebhookBatcher {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final long MAX_RETRY_DELAY_MS = 60000;
+
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private static final long HANDOFF_RETRY_MS = 50;
+
+    // Returned by a batch already handed over, the event goes to a new batch
+    private static final List<WebhookEvent> RETIRED = List.of();
+
+    private final ScheduledThreadPoolExecutor scheduler;
+
+    private final ThreadPoolExecutor flushers;
+
+    private final long drainTimeoutSeconds;
+
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+
+    private final AtomicLong handledBatchCount = new AtomicLong();
+
+    private final AtomicLong handledEventCount = new AtomicLong();
+
+    private final AtomicLong retriedBatchCount = new AtomicLong();
+
+    private final AtomicLong droppedBatchCount = new AtomicLong();
+
+    public WebhookBatcher(int threads, int queueCapacity, long drainTimeoutSeconds) {
+        this.scheduler = new ScheduledThreadPoolExecutor(1, runnable -> newThread(runnable, "fdk-webhook-batch-timer"));
+        this.scheduler.setRemoveOnCancelPolicy(true);
+        this.flushers = new ThreadPoolExecutor(Math.max(1, threads), Math.max(1, threads), 60, TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(Math.max(1, queueCapacity)),
+                                               runnable -> newThread(runnable, "fdk-webhook-batch-"
+                                                       + THREAD_COUNTER.incrementAndGet()));
+        this.drainTimeoutSeconds = drainTimeoutSeconds;
+    }
+
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    void add(String handlerName, BatchEventHandler handler, EventMapProperties config, WebhookEvent event) {
+        String key = handlerName + "|" + event.getEventName() + "|" + event.getCompanyId();
+        while (true) {
+            Batch batch = batches.computeIfAbsent(key, k -> new Batch(k, handler, event.getEventName(),
+                                                                        event.getCompanyId(), config));
+            List<WebhookEvent> full = batch.add(event);
+            if (full != RETIRED) {
+                if (full != null) {
+                    submit(batch, full, 1, true);
+                }
+                return;
+            }
+        }
+    }
+
+    // Only request threads run a batch themselves when the pool is full, the timer hands it over again later
+    private void submit(Batch batch, List<WebhookEvent> events, int attempt, boolean callerRuns) {
+        try {
+            flushers.execute(() -> deliver(batch, events, attempt));
+            return;
+        } catch (RejectedExecutionException e) {
+            if (!flushers.isShutdown()) {
+                if (callerRuns) {
+                    deliver(batch, events, attempt);
+                    return;
+                }
+                try {
+                    scheduler.schedule(() -> submit(batch, events, attempt, false), HANDOFF_RETRY_MS,
+                                       TimeUnit.MILLISECONDS);
+                    return;
+                } catch (RejectedExecutionException stopped) {
+                    // Batcher is shutting down
+                }
+            }
+        }
+        droppedBatchCount.incrementAndGet();
+        log.error("Webhook batch of {} {} events for company {} dropped, batcher is shut down", events.size(),
+                  batch.eventName, batch.companyId);
+    }
+
+    private void deliver(Batch batch, List<WebhookEvent> events, int attempt) {
+        try {
+            batch.handler.handle(batch.eventName, batch.companyId, events);
+            handledBatchCount.incrementAndGet();
+            handledEventCount.addAndGet(events.size());
+        } catch (RuntimeException e) {
+            if (attempt >= batch.maxAttempts || scheduler.isShutdown()) {
+                droppedBatchCount.incrementAndGet();
+                log.error("Webhook batch of {} {} events for company {} failed {} times, dropped", events.size(),
+                          batch.eventName, batch.companyId, attempt, e);
+                return;
+            }
+            long delay = Math.min(MAX_RETRY_DELAY_MS, RETRY_DELAY_MS << Math.min(attempt - 1, 16));
+            log.warn("Webhook batch of {} {} events for company {} failed, retrying in {}ms", events.size(),
+                     batch.eventName, batch.companyId, delay, e);
+            try {
+                scheduler.schedule(() -> submit(batch, events, attempt + 1, false), delay, TimeUnit.MILLISECONDS);
+                retriedBatchCount.incrementAndGet();
+            } catch (RejectedExecutionException rejected) {
+                droppedBatchCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Hands over every pending batch and waits up to {@code drainTimeoutSeconds} for them to be handled.
+     * Retries still waiting for their backoff are dropped.
+     */
+    public void shutdown() {
+        scheduler.shutdownNow();
+        batches.values()
+               .forEach(batch -> {
+                   List<WebhookEvent> pending = batch.drain();
+                   if (!pending.isEmpty()) {
+                       submit(batch, pending, batch.maxAttempts, true);
+                   }
+               });
+        flushers.shutdown();
+        try {
+            if (!flushers.awaitTermination(drainTimeoutSeconds, TimeUnit.SECONDS)) {
+                log.warn("Webhook batches did not drain in {}s", drainTimeoutSeconds);
+                flushers.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            flushers.shutdownNow();
+            Thread.currentThread()
+                  .interrupt();
+        }
+    }
+
+    /**
+     * Events waiting in batches that are not full yet.
+     */
+    public int getPendingEventCount() {
+        return batches.values()
+                      .stream()
+                      .mapToInt(Batch::size)
+                      .sum();
+    }
+
+    public long getHandledBatchCount() {
+        return handledBatchCount.get();
+    }
+
+    public long getHandledEventCount() {
+        return handledEventCount.get();
+    }
+
+    public long getRetriedBatchCount() {
+        return retriedBatchCount.get();
+    }
+
+    public long getDroppedBatchCount() {
+        return droppedBatchCount.get();
+    }
+
+    /**
+     * Events of one batch. A batch is removed from {@code batches} once drained, events arriving after
+     * that start the next one.
+     */
+    private final class Batch {
+
+        final String key;
+
+        final BatchEventHandler handler;
+
+        final String eventName;
+
+        final String companyId;
+
+        final int batchSize;
+
+        final long lingerMs;
+
+        final int maxAttempts;
+
+        private List<WebhookEvent> events = new ArrayList<>();
+
+        private ScheduledFuture<?> lingerTimer;
+
+        private boolean retired;
+
+        Batch(String key, BatchEventHandler handler, String eventName, String companyId,
+              EventMapProperties config) {
+            this.key = key;
+            this.handler = handler;
+            this.eventName = eventName;
+            this.companyId = companyId;
+            this.batchSize = Math.max(1, config.getBatchSize());
+            this.lingerMs = Math.max(0, config.getLingerMs());
+            this.maxAttempts = Math.max(1, config.getBatchMaxAttempts());
+        }
+
+        // Returns the events to hand over when the batch is full, or RETIRED once it was drained
+        synchronized List<WebhookEvent> add(WebhookEvent event) {
+            if (retired) {
+                return RETIRED;
+            }
+            events.add(event);
+            if (events.size() >= batchSize) {
+                return drain();
+            }
+            if (events.size() == 1) {
+                try {
+                    lingerTimer = scheduler.schedule(this::lingered, lingerMs, TimeUnit.MILLISECONDS);
+                } catch (RejectedExecutionException e) {
+                    return drain();
+                }
+            }
+            return null;
+        }
+
+        synchronized List<WebhookEvent> drain() {
+            if (lingerTimer != null) {
+                lingerTimer.cancel(false);
+                lingerTimer = null;
+            }
+            List<WebhookEvent> drained = events;
+            events = new ArrayList<>();
+            if (!retired) {
+                retired = true;
+                batches.remove(key, this);
+            }
+            return drained;
+        }
+
+        synchronized int size() {
+            return events.size();
+        }
+
+        private void lingered() {
+            List<WebhookEvent> pending;
+            synchronized (this) {
+                lingerTimer = null;
+                pending = drain();
+            }
+            if (!pending.isEmpty()) {
+                submit(this, pending, 1, false);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.fynd.extension.service;
+
+import com.fynd.extension.error.FdkWebhookProcessError;
+
+import javax.crypto.Mac;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Raw bytes of a webhook request, read once and fed to the signature {@link Mac} while they are read.
+ */
+final class WebhookBody {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    // The content length is sent by the client, a larger body only grows the buffer once its bytes arrive
+    private static final int MAX_INITIAL_BUFFER_SIZE = 64 * 1024;
+
+    final byte[] bytes;
+
+    final int length;
+
+    final byte[] signature;
+
+    private WebhookBody(byte[] bytes, int length, byte[] signature) {
+        this.bytes = bytes;
+        this.length = length;
+        this.signature = signature;
+    }
+
+    /**
+     * Reads the whole stream into a buffer sized from {@code contentLength} when it is known, and fails once
+     * the body is larger than {@code maxSize} bytes.
+     */
+    static WebhookBody read(InputStream in, int contentLength, int maxSize, Mac mac) throws IOException {
+        if (contentLength > maxSize) {
+            throw tooLarge(maxSize);
+        }
+        mac.reset();
+        byte[] buffer = new byte[contentLength > 0 ? Math.min(contentLength, MAX_INITIAL_BUFFER_SIZE)
+                : Math.min(DEFAULT_BUFFER_SIZE, maxSize)];
+        int size = 0;
+        while (true) {
+            if (size == buffer.length) {
+                // A full buffer is usually the whole body, a single byte read tells without growing it
+                int next = in.read();
+                if (next == -1) {
+                    break;
+                }
+                if (size >= maxSize) {
+                    throw tooLarge(maxSize);
+                }
+                buffer = Arrays.copyOf(buffer, (int) Math.min((long) buffer.length * 2, maxSize));
+                buffer[size] = (byte) next;
+                mac.update((byte) next);
+                size++;
+            }
+            int read = in.read(buffer, size, buffer.length - size);
+            if (read == -1) {
+                break;
+            }
+            mac.update(buffer, size, read);
+            size += read;
+        }
+        return new WebhookBody(buffer, size, mac.doFinal());
+    }
+
+    private static FdkWebhookProcessError tooLarge(int maxSize) {
+        return new FdkWebhookProcessError("Webhook body is larger than " + maxSize + " bytes");
+    }
+
+    String asString() {
+        return new String(bytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
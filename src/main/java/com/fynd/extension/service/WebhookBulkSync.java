@@ -0,0 +1,208 @@
+package com.fynd.extension.service;
+
+import com.fynd.extension.error.FdkSessionNotFound;
+import com.fynd.extension.model.WebhookSyncProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Syncs webhook subscribers of many companies on a pool of its own, a bounded number at a time.
+ * <p>
+ * Companies are taken from the stream only as slots free up, so a large stream is never buffered. Calls an
+ * attempt makes to the platform get what is left of its timeout as their call timeout, so an attempt out of
+ * time fails its pending call and returns. Storage calls, such as reading the offline session or the sync
+ * stamp, are not bounded by it and rely on the storage client's own timeouts. A failed attempt is retried
+ * with exponential backoff, only once it returned, while it keeps its slot.
+ */
+@Slf4j
+class WebhookBulkSync<T> {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final long MAX_RETRY_DELAY_MS = 60000;
+
+    // Deadline of the attempt running on a worker, in System.nanoTime()
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private final int parallelism;
+
+    private final long timeoutSeconds;
+
+    private final int maxAttempts;
+
+    private final long retryDelayMs;
+
+    private final Function<T, String> companyIdOf;
+
+    private final Consumer<T> syncCompany;
+
+    private final Consumer<WebhookSyncReport> progress;
+
+    private final WebhookSyncReport report = new WebhookSyncReport();
+
+    private final Semaphore slots;
+
+    private final ThreadPoolExecutor workers;
+
+    private final ScheduledThreadPoolExecutor timer;
+
+    WebhookBulkSync(WebhookSyncProperties properties, Function<T, String> companyIdOf, Consumer<T> syncCompany,
+                    Consumer<WebhookSyncReport> progress) {
+        this.parallelism = Math.max(1, properties.getParallelism());
+        this.timeoutSeconds = Math.max(1, properties.getTimeoutSeconds());
+        this.maxAttempts = Math.max(1, properties.getMaxAttempts());
+        this.retryDelayMs = Math.max(0, properties.getRetryDelayMs());
+        this.companyIdOf = companyIdOf;
+        this.syncCompany = syncCompany;
+        this.progress = progress;
+        this.slots = new Semaphore(parallelism);
+        int run = THREAD_COUNTER.incrementAndGet();
+        AtomicInteger workerCounter = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(parallelism, parallelism, 0, TimeUnit.MILLISECONDS,
+                                              new LinkedBlockingQueue<>(),
+                                              runnable -> newThread(runnable, "fdk-webhook-sync-" + run + "-"
+                                                      + workerCounter.incrementAndGet()));
+        this.timer = new ScheduledThreadPoolExecutor(1, runnable -> newThread(runnable,
+                                                                              "fdk-webhook-sync-" + run + "-timer"));
+        this.timer.setRemoveOnCancelPolicy(true);
+    }
+
+    private static Thread newThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Call timeout for a call made by the current thread: what is left of its attempt's timeout, at least a
+     * millisecond, or {@code 0} for no timeout outside of a bulk sync.
+     */
+    static long callTimeoutMs() {
+        Long deadline = DEADLINE.get();
+        if (Objects.isNull(deadline)) {
+            return 0;
+        }
+        return Math.max(1, TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime()));
+    }
+
+    /**
+     * Syncs every company of the stream and returns once all of them succeeded or ran out of attempts.
+     * When the calling thread is interrupted, attempts still running are interrupted and left pending.
+     */
+    WebhookSyncReport run(Stream<T> items) {
+        try (items) {
+            Iterator<T> iterator = items.iterator();
+            while (iterator.hasNext()) {
+                T item = iterator.next();
+                slots.acquire();
+                report.submitted();
+                attempt(item, companyIdOf.apply(item), 1);
+            }
+            slots.acquire(parallelism);
+            slots.release(parallelism);
+        } catch (InterruptedException e) {
+            log.warn("Webhook bulk sync interrupted, {} companies left pending", report.getPendingCount());
+            Thread.currentThread()
+                  .interrupt();
+        } finally {
+            timer.shutdownNow();
+            workers.shutdownNow();
+            report.finish();
+        }
+        log.info("Webhook bulk sync finished : {}", report);
+        return report;
+    }
+
+    private void attempt(T item, String companyId, int attempt) {
+        try {
+            workers.execute(new Attempt(item, companyId, attempt));
+        } catch (RejectedExecutionException e) {
+            failed(companyId, "Bulk sync stopped before the company was synced");
+        }
+    }
+
+    private void retryOrFail(Attempt failed, Throwable cause, boolean timedOut) {
+        String reason = timedOut ? "Timed out after " + timeoutSeconds + "s : " + cause.getMessage()
+                : String.valueOf(cause.getMessage());
+        if (!(cause instanceof FdkSessionNotFound) && failed.attempt < maxAttempts) {
+            long delay = Math.min(MAX_RETRY_DELAY_MS, retryDelayMs << Math.min(failed.attempt - 1, 16));
+            try {
+                timer.schedule(() -> attempt(failed.item, failed.companyId, failed.attempt + 1), delay,
+                               TimeUnit.MILLISECONDS);
+                report.retried();
+                log.warn("Webhook sync for company {} failed on attempt {}, retrying in {}ms : {}", failed.companyId,
+                         failed.attempt, delay, reason);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Bulk sync is stopping, record the failure below
+            }
+        }
+        log.error("Webhook sync for company {} failed after {} attempts : {}", failed.companyId, failed.attempt,
+                  reason);
+        failed(failed.companyId, reason);
+    }
+
+    private void failed(String companyId, String reason) {
+        report.failed(companyId, reason);
+        completed();
+    }
+
+    private void completed() {
+        try {
+            if (Objects.nonNull(progress)) {
+                progress.accept(report);
+            }
+        } catch (RuntimeException e) {
+            log.error("Webhook sync progress listener failed", e);
+        } finally {
+            slots.release();
+        }
+    }
+
+    private final class Attempt implements Runnable {
+
+        private final T item;
+
+        private final String companyId;
+
+        private final int attempt;
+
+        Attempt(T item, String companyId, int attempt) {
+            this.item = item;
+            this.companyId = companyId;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public void run() {
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(timeoutSeconds);
+            DEADLINE.set(deadline);
+            Throwable failure = null;
+            try {
+                syncCompany.accept(item);
+            } catch (RuntimeException | Error e) {
+                failure = e;
+            } finally {
+                DEADLINE.remove();
+            }
+            if (Objects.nonNull(failure)) {
+                retryOrFail(this, failure, System.nanoTime() - deadline >= 0);
+                return;
+            }
+            report.succeeded();
+            completed();
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.fynd.extension.service;
+
+import com.fynd.extension.model.WebhookDedupeProperties;
+import com.fynd.extension.storage.BaseStorage;
+import com.fynd.extension.storage.MemoryStorage;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.codec.binary.Hex;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the webhook events already taken for handling, so that redeliveries are skipped.
+ * <p>
+ * An event is claimed as in progress in a bounded in-process {@link MemoryStorage} first, which answers
+ * repeated deliveries to the same node, then with {@link BaseStorage#setnx} in the shared storage when one
+ * is given. It is marked done once handled, and only then are its redeliveries skipped. A claim is released
+ * when handling fails, so the platform's next delivery is handled again, and expires after
+ * {@code processingTtlSeconds} when its node never finishes it.
+ */
+@Slf4j
+public class WebhookDedupe {
+
+    private static final String KEY_PREFIX = "webhook_event:";
+
+    private static final String IN_PROGRESS = "in_progress";
+
+    private static final String DONE = "done";
+
+    /**
+     * State of an event found by {@link #claim}.
+     */
+    enum Claim {
+        CLAIMED, IN_PROGRESS, DONE
+    }
+
+    private final int ttlSeconds;
+
+    private final int processingTtlSeconds;
+
+    private final MemoryStorage local;
+
+    private final BaseStorage shared;
+
+    private volatile boolean sharedSupported = true;
+
+    private final AtomicLong claimedCount = new AtomicLong();
+
+    private final AtomicLong inProgressCount = new AtomicLong();
+
+    private final AtomicLong localDuplicateCount = new AtomicLong();
+
+    private final AtomicLong sharedDuplicateCount = new AtomicLong();
+
+    public WebhookDedupe(WebhookDedupeProperties properties, BaseStorage shared) {
+        this.ttlSeconds = Math.max(1, properties.getTtlSeconds());
+        this.processingTtlSeconds = Math.max(1, properties.getProcessingTtlSeconds());
+        this.local = new MemoryStorage(KEY_PREFIX, Math.max(1, properties.getLocalMaxEntries()));
+        this.shared = shared;
+    }
+
+    /**
+     * Key of a delivery, from its event id, else its trace id, else a hash of its body.
+     */
+    static String key(WebhookEnvelope envelope, WebhookBody body) {
+        if (Objects.nonNull(envelope.id)) {
+            return "id:" + envelope.id;
+        }
+        if (Objects.nonNull(envelope.traceId)) {
+            return "trace:" + envelope.traceId;
+        }
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(body.bytes, 0, body.length);
+            return "sha256:" + Hex.encodeHexString(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Claims the event as in progress, or tells whether it is already in progress or done, here or on
+     * another node.
+     */
+    Claim claim(String key) {
+        if (!Boolean.TRUE.equals(local.setnx(key, IN_PROGRESS, processingTtlSeconds))) {
+            return duplicate(key, local.get(key), localDuplicateCount);
+        }
+        if (Objects.nonNull(shared) && sharedSupported) {
+            try {
+                if (!Boolean.TRUE.equals(shared.setnx(KEY_PREFIX + key, IN_PROGRESS, processingTtlSeconds))) {
+                    Claim claim = duplicate(key, shared.get(KEY_PREFIX + key), sharedDuplicateCount);
+                    if (claim == Claim.DONE) {
+                        local.setex(key, ttlSeconds, DONE);
+                    } else {
+                        // The other node may still fail, the next delivery asks the shared storage again
+                        local.del(key);
+                    }
+                    return claim;
+                }
+            } catch (RuntimeException e) {
+                // Storages without setnx, or an unreachable one, leave dedupe to this node
+                if ("Method not implemented".equals(e.getMessage())) {
+                    sharedSupported = false;
+                }
+                log.warn("Webhook dedupe falls back to in-process only", e);
+            }
+        }
+        claimedCount.incrementAndGet();
+        return Claim.CLAIMED;
+    }
+
+    private Claim duplicate(String key, String state, AtomicLong duplicateCount) {
+        if (DONE.equals(state)) {
+            duplicateCount.incrementAndGet();
+            return Claim.DONE;
+        }
+        // In progress, or released while it was read, either way the delivery is retried later
+        inProgressCount.incrementAndGet();
+        log.info("Webhook event {} is still being handled", key);
+        return Claim.IN_PROGRESS;
+    }
+
+    /**
+     * Marks a claimed event as handled, its redeliveries are skipped for {@code ttlSeconds}.
+     */
+    void complete(String key) {
+        local.setex(key, ttlSeconds, DONE);
+        if (Objects.nonNull(shared) && sharedSupported) {
+            try {
+                shared.setex(KEY_PREFIX + key, ttlSeconds, DONE);
+            } catch (RuntimeException e) {
+                log.warn("Failed to mark webhook event {} as handled, only this node skips its redelivery", key, e);
+            }
+        }
+    }
+
+    void release(String key) {
+        local.del(key);
+        if (Objects.nonNull(shared) && sharedSupported) {
+            try {
+                shared.del(KEY_PREFIX + key);
+            } catch (RuntimeException e) {
+                log.warn("Failed to release webhook event {}, it is handled again once its claim expires", key, e);
+            }
+        }
+    }
+
+    public long getClaimedCount() {
+        return claimedCount.get();
+    }
+
+    /**
+     * Deliveries of an event still being handled, rejected so the platform delivers them again later.
+     */
+    public long getInProgressCount() {
+        return inProgressCount.get();
+    }
+
+    /**
+     * Duplicates of handled events skipped by the in-process index and by the shared storage.
+     */
+    public long getSuppressedCount() {
+        return localDuplicateCount.get() + sharedDuplicateCount.get();
+    }
+
+    public long getLocalSuppressedCount() {
+        return localDuplicateCount.get();
+    }
+
+    public long getSharedSuppressedCount() {
+        return sharedDuplicateCount.get();
+    }
+}
@@ -0,0 +1,96 @@
+package com.fynd.extension.service;
+
+import com.fynd.extension.middleware.BatchEventHandler;
+import com.fynd.extension.middleware.EventHandler;
+import com.fynd.extension.model.EventMapProperties;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Webhook event map indexed by event name, category and version, with handlers resolved up front.
+ * <p>
+ * A lookup returns the entry a scan of the event map would pick, the last one matching the event. An entry
+ * matches an event of the same name when category and version are equal, when the entry leaves either out,
+ * or when the event does. Kafka events are not delivered over HTTP and are left out.
+ */
+class WebhookDispatchIndex {
+
+    private final List<EventMapProperties> eventMap;
+
+    // Entries with both category and version, by category/name/version
+    private final Map<String, Route> exact = new HashMap<>();
+
+    // Entries without category or version, by name
+    private final Map<String, Route> wildcard = new HashMap<>();
+
+    // Every entry by name, for events without category or version
+    private final Map<String, Route> byName = new HashMap<>();
+
+    WebhookDispatchIndex(List<EventMapProperties> eventMap, Map<String, EventHandler> eventHandlerMap,
+                         Map<String, BatchEventHandler> batchEventHandlerMap) {
+        this.eventMap = eventMap;
+        for (int position = 0; position < eventMap.size(); position++) {
+            EventMapProperties event = eventMap.get(position);
+            if (Objects.equals(event.getProvider(), "kafka") || Objects.isNull(event.getName())) {
+                continue;
+            }
+            Route route = new Route(position, event,
+                                    Objects.nonNull(eventHandlerMap) && Objects.nonNull(event.getHandler())
+                                            ? eventHandlerMap.get(event.getHandler()) : null,
+                                    Objects.nonNull(batchEventHandlerMap) && Objects.nonNull(event.getHandler())
+                                            ? batchEventHandlerMap.get(event.getHandler()) : null);
+            byName.put(event.getName(), route);
+            if (StringUtils.isEmpty(event.getCategory()) || StringUtils.isEmpty(event.getVersion())) {
+                wildcard.put(event.getName(), route);
+            } else {
+                exact.put(key(event.getName(), event.getCategory(), event.getVersion()), route);
+            }
+        }
+    }
+
+    boolean isFor(List<EventMapProperties> eventMap) {
+        return this.eventMap == eventMap;
+    }
+
+    Route lookup(String eventName, String eventCategory, String eventVersion) {
+        if (StringUtils.isEmpty(eventCategory) || StringUtils.isEmpty(eventVersion)) {
+            return byName.get(eventName);
+        }
+        Route exactRoute = exact.get(key(eventName, eventCategory, eventVersion));
+        Route wildcardRoute = wildcard.get(eventName);
+        if (Objects.isNull(exactRoute) || Objects.isNull(wildcardRoute)) {
+            return Objects.isNull(exactRoute) ? wildcardRoute : exactRoute;
+        }
+        return exactRoute.position > wildcardRoute.position ? exactRoute : wildcardRoute;
+    }
+
+    private static String key(String name, String category, String version) {
+        return category + "/" + name + "/v" + version;
+    }
+
+    static final class Route {
+
+        final int position;
+
+        final String handlerName;
+
+        final EventMapProperties event;
+
+        final EventHandler handler;
+
+        // Takes precedence over handler when the bean implements both
+        final BatchEventHandler batchHandler;
+
+        Route(int position, EventMapProperties event, EventHandler handler, BatchEventHandler batchHandler) {
+            this.position = position;
+            this.handlerName = event.getHandler();
+            this.event = event;
+            this.handler = handler;
+            this.batchHandler = batchHandler;
+        }
+    }
+}
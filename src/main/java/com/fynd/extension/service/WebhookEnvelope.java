@@ -0,0 +1,122 @@
+package com.fynd.extension.service;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fynd.extension.error.FdkWebhookProcessError;
+import org.apache.commons.lang3.StringUtils;
+
+import java.io.IOException;
+
+/**
+ * Routing fields of a webhook delivery, pulled from the body with a streaming parser that skips everything
+ * else, payloads included.
+ */
+final class WebhookEnvelope {
+
+    String companyId = StringUtils.EMPTY;
+
+    String applicationId = StringUtils.EMPTY;
+
+    String name;
+
+    String type;
+
+    String category = StringUtils.EMPTY;
+
+    String version = StringUtils.EMPTY;
+
+    // Identify a delivery across redeliveries, when the platform sends them
+    String id;
+
+    String traceId;
+
+    private boolean hasEvent;
+
+    static WebhookEnvelope parse(JsonFactory jsonFactory, byte[] bytes, int length) throws IOException {
+        WebhookEnvelope envelope = new WebhookEnvelope();
+        try (JsonParser parser = jsonFactory.createParser(bytes, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new FdkWebhookProcessError("Webhook body is not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (WebhookService.Fields.COMPANY_ID.equals(field)) {
+                    envelope.companyId = text(parser, value);
+                } else if (WebhookService.Fields.APPLICATION_ID.equals(field)) {
+                    envelope.applicationId = text(parser, value);
+                } else if (WebhookService.Fields.EVENT_OBJECT.equals(field) && value == JsonToken.START_OBJECT) {
+                    envelope.hasEvent = true;
+                    parseEvent(parser, envelope);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (!envelope.hasEvent || envelope.name == null) {
+            throw new FdkWebhookProcessError("Webhook body has no event name");
+        }
+        return envelope;
+    }
+
+    private static void parseEvent(JsonParser parser, WebhookEnvelope envelope) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (WebhookService.Fields.EVENT_NAME.equals(field)) {
+                envelope.name = text(parser, value);
+            } else if (WebhookService.Fields.EVENT_TYPE.equals(field)) {
+                envelope.type = text(parser, value);
+            } else if (WebhookService.Fields.EVENT_CATEGORY.equals(field)) {
+                envelope.category = text(parser, value);
+            } else if (WebhookService.Fields.EVENT_VERSION.equals(field)) {
+                envelope.version = text(parser, value);
+            } else if (WebhookService.Fields.EVENT_ID.equals(field)) {
+                envelope.id = identifier(parser, value);
+            } else if (WebhookService.Fields.EVENT_TRACE_ID.equals(field)) {
+                envelope.traceId = identifier(parser, value);
+            } else {
+                parser.skipChildren();
+            }
+        }
+    }
+
+    // Scalars as text, the way org.json printed them
+    private static String text(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.START_OBJECT || value == JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return StringUtils.EMPTY;
+        }
+        return value == JsonToken.VALUE_NULL ? "null" : parser.getText();
+    }
+
+    // A scalar, or the first scalar of an array as trace ids come as lists
+    private static String identifier(JsonParser parser, JsonToken value) throws IOException {
+        if (value == JsonToken.START_ARRAY) {
+            String first = null;
+            JsonToken element;
+            while ((element = parser.nextToken()) != JsonToken.END_ARRAY) {
+                if (first == null && element.isScalarValue() && element != JsonToken.VALUE_NULL) {
+                    first = parser.getText();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return StringUtils.isEmpty(first) ? null : first;
+        }
+        if (value == JsonToken.START_OBJECT || value == JsonToken.VALUE_NULL) {
+            parser.skipChildren();
+            return null;
+        }
+        return StringUtils.isEmpty(parser.getText()) ? null : parser.getText();
+    }
+
+    boolean isPing() {
+        return WebhookService.Fields.EVENT_PING.equals(name);
+    }
+
+    String eventName() {
+        return name + "/" + type;
+    }
+}
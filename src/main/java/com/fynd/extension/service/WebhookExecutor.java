@@ -0,0 +1,184 @@
+package com.fynd.extension.service;
+
+import com.fynd.extension.error.FdkWebhookRejected;
+import com.fynd.extension.model.WebhookDispatchProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs webhook handlers off the request thread on a bounded pool.
+ * <p>
+ * A delivery that finds the queue full, or its handler at {@code handlerConcurrency}, is rejected with
+ * {@link FdkWebhookRejected} so the platform redelivers it later, or with the {@code caller_runs} policy
+ * is handled on the request thread instead.
+ * <p>
+ * Dispatch is at-most-once: the platform gets its acknowledgement once the delivery is queued, so a
+ * handler that then fails, or a delivery still queued when the drain times out, is not delivered again.
+ * Failures are logged and counted in {@link #getHandlerMetrics()}, handlers needing every event must
+ * retry on their own or run on the request thread.
+ */
+@Slf4j
+public class WebhookExecutor {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+
+    private final int handlerConcurrency;
+
+    private final boolean callerRuns;
+
+    private final long drainTimeoutSeconds;
+
+    private final Map<String, Semaphore> handlerPermits = new ConcurrentHashMap<>();
+
+    private final Map<String, HandlerMetrics> handlerMetrics = new ConcurrentHashMap<>();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    public WebhookExecutor(WebhookDispatchProperties properties) {
+        int threads = Math.max(1, properties.getThreads());
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())),
+                                               runnable -> {
+                                                   Thread thread = new Thread(runnable, "fdk-webhook-"
+                                                           + THREAD_COUNTER.incrementAndGet());
+                                                   thread.setDaemon(true);
+                                                   return thread;
+                                               });
+        this.handlerConcurrency = properties.getHandlerConcurrency();
+        this.callerRuns = WebhookDispatchProperties.CALLER_RUNS.equals(properties.getRejectionPolicy());
+        this.drainTimeoutSeconds = properties.getDrainTimeoutSeconds();
+    }
+
+    void submit(String handlerName, Runnable handler) {
+        HandlerMetrics metrics = handlerMetrics.computeIfAbsent(handlerName, name -> new HandlerMetrics());
+        Semaphore permits = handlerConcurrency > 0 ? handlerPermits.computeIfAbsent(
+                handlerName, name -> new Semaphore(handlerConcurrency)) : null;
+        if (permits != null && !permits.tryAcquire()) {
+            reject(handlerName, handler, metrics);
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    metrics.run(handler);
+                } catch (RuntimeException e) {
+                    log.error("Exception occurred in webhook handler {}, the event is not redelivered : ", handlerName, e);
+                } finally {
+                    if (permits != null) {
+                        permits.release();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (permits != null) {
+                permits.release();
+            }
+            reject(handlerName, handler, metrics);
+        }
+    }
+
+    private void reject(String handlerName, Runnable handler, HandlerMetrics metrics) {
+        rejectedCount.incrementAndGet();
+        if (callerRuns && !executor.isShutdown()) {
+            log.warn("Webhook handler {} is at capacity, running it on the request thread", handlerName);
+            metrics.run(handler);
+            return;
+        }
+        throw new FdkWebhookRejected("Webhook handler " + handlerName + " is at capacity, delivery rejected");
+    }
+
+    /**
+     * Stops taking deliveries and waits up to {@code drainTimeoutSeconds} for queued ones to be handled.
+     */
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(drainTimeoutSeconds, TimeUnit.SECONDS)) {
+                int dropped = executor.shutdownNow()
+                                      .size();
+                log.warn("Webhook handlers did not drain in {}s, {} queued deliveries dropped", drainTimeoutSeconds,
+                         dropped);
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread()
+                  .interrupt();
+        }
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue()
+                       .size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejectedCount() {
+        return rejectedCount.get();
+    }
+
+    /**
+     * Latency and failure counters per handler bean name.
+     */
+    public Map<String, HandlerMetrics> getHandlerMetrics() {
+        return Collections.unmodifiableMap(handlerMetrics);
+    }
+
+    public static final class HandlerMetrics {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder failures = new LongAdder();
+
+        private final LongAdder totalNanos = new LongAdder();
+
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void run(Runnable handler) {
+            long start = System.nanoTime();
+            try {
+                handler.run();
+            } catch (RuntimeException e) {
+                failures.increment();
+                throw e;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                count.increment();
+                totalNanos.add(elapsed);
+                maxNanos.accumulateAndGet(elapsed, Math::max);
+            }
+        }
+
+        public long getCount() {
+            return count.sum();
+        }
+
+        public long getFailures() {
+            return failures.sum();
+        }
+
+        public double getAverageLatencyMillis() {
+            long handled = count.sum();
+            return handled == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / handled;
+        }
+
+        public double getMaxLatencyMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+    }
+}
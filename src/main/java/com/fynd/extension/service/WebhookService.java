@@ -1,29 +1,40 @@
 package com.fynd.extension.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fynd.extension.error.*;
+import com.fynd.extension.middleware.BatchEventHandler;
 import com.fynd.extension.middleware.ClientCall;
 import com.fynd.extension.middleware.EventHandler;
+import com.fynd.extension.middleware.HttpTransport;
 import com.fynd.extension.middleware.PlatformClientCall;
-import com.fynd.extension.middleware.RetryInterceptor;
+import com.fynd.extension.middleware.WebhookEvent;
+import com.fynd.extension.middleware.WebhookPayload;
 import com.fynd.extension.model.Criteria;
+import com.fynd.extension.model.Extension;
 import com.fynd.extension.model.EventMapProperties;
 import com.fynd.extension.model.ExtensionProperties;
+import com.fynd.extension.model.Option;
+import com.fynd.extension.model.WebhookDedupeProperties;
+import com.fynd.extension.model.WebhookDispatchProperties;
 import com.fynd.extension.model.WebhookProperties;
+import com.fynd.extension.model.WebhookSyncProperties;
 import com.fynd.extension.middleware.ExtensionInterceptor;
 import com.fynd.extension.model.webhookmodel.*;
+import com.fynd.extension.session.Session;
+import com.fynd.extension.session.SessionStorage;
+import com.fynd.extension.storage.BaseStorage;
 import com.sdk.common.RequestSignerInterceptor;
-import com.sdk.common.RetrofitServiceFactory;
 import com.sdk.platform.AccessTokenInterceptor;
 import com.sdk.platform.PlatformClient;
 import com.sdk.platform.PlatformConfig;
+import jakarta.annotation.PreDestroy;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import okhttp3.Interceptor;
 import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import retrofit2.Response;
@@ -32,10 +43,15 @@ import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Component
 @Slf4j
@@ -43,18 +59,21 @@ public class WebhookService {
 
     public boolean isInitialized;
 
-    String webhookUrl;
-
-    String associationCriteria;
-
     WebhookProperties webhookProperties;
 
     @Autowired(required = false)
     Map<String, EventHandler> eventHandlerMap;
 
+    @Autowired(required = false)
+    Map<String, BatchEventHandler> batchEventHandlerMap;
+
     @Autowired
     ExtensionProperties extensionProperties;
 
+    // Storage for cross-node webhook dedupe, absent on the instance the extension creates for itself
+    @Autowired(required = false)
+    Extension extension;
+
     @Autowired
     ObjectMapper objectMapper = new ObjectMapper();
 
@@ -62,24 +81,37 @@ public class WebhookService {
 
     EventConfigResponse eventConfigData;
 
+    // Built from the event map on initialize, or on the first webhook by the instance receiving them
+    private volatile WebhookDispatchIndex dispatchIndex;
+
+    private volatile WebhookExecutor webhookExecutor;
+
+    private volatile WebhookDedupe webhookDedupe;
+
+    private volatile WebhookBatcher webhookBatcher;
+
+    private static final ThreadLocal<SignatureMac> SIGNATURE_MAC = new ThreadLocal<>();
+
+    private static final ObjectMapper CANONICAL_MAPPER = new ObjectMapper().configure(
+            SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+
     ClientCall getClientCallApiList(){
-        RetrofitServiceFactory retrofitServiceFactory = new RetrofitServiceFactory();
         List<Interceptor> interceptorList = new ArrayList<>();
-        interceptorList.add(new ExtensionInterceptor(extensionProperties));
+        interceptorList.add(ExtensionInterceptor.forProperties(extensionProperties));
         interceptorList.add(new RequestSignerInterceptor());
-        interceptorList.add(new RetryInterceptor());
-        ClientCall clientCall = retrofitServiceFactory.createService(extensionProperties.getCluster(), ClientCall.class,
-                interceptorList);
+        ClientCall clientCall = HttpTransport.getInstance(extensionProperties.getHttp())
+                .createRetryingService(extensionProperties.getCluster(), ClientCall.class, interceptorList,
+                                       WebhookBulkSync.callTimeoutMs());
         return clientCall;
     }
 
     PlatformClientCall getPlatformClientCallApiList(PlatformConfig platformConfig){
-        RetrofitServiceFactory retrofitServiceFactory = new RetrofitServiceFactory();
         List<Interceptor> interceptorList = new ArrayList<>();
         interceptorList.add(new AccessTokenInterceptor(platformConfig));
         interceptorList.add(new RequestSignerInterceptor());
-        PlatformClientCall platformClientCall = retrofitServiceFactory.createService(extensionProperties.getCluster(), PlatformClientCall.class,
-                interceptorList);
+        PlatformClientCall platformClientCall = HttpTransport.getInstance(extensionProperties.getHttp())
+                .createRetryingService(extensionProperties.getCluster(), PlatformClientCall.class, interceptorList,
+                                       WebhookBulkSync.callTimeoutMs());
         return platformClientCall;
     }
 
@@ -115,6 +147,142 @@ public class WebhookService {
         }
     }
 
+    /**
+     * Syncs webhook subscribers of many companies, each with its stored offline session, as configured by
+     * {@code webhook.sync}. Returns once every company succeeded or ran out of attempts.
+     *
+     * @param progress called with the report whenever a company succeeded or failed, may be {@code null}
+     */
+    public WebhookSyncReport syncEventsForCompanies(Extension extension, Stream<String> companyIds,
+                                                    Boolean enableWebhooks, Consumer<WebhookSyncReport> progress) {
+        return bulkSync(companyId -> companyId, companyId -> {
+            Session session;
+            try {
+                session = new SessionStorage().getSession(Session.generateSessionId(false, new Option(
+                        companyId, extension.getExtensionProperties()
+                                            .getCluster())), extension);
+            } catch (Exception e) {
+                throw new FdkSessionNotFound("Offline session of company " + companyId + " could not be read");
+            }
+            if (Objects.isNull(session)) {
+                throw new FdkSessionNotFound("Offline session of company " + companyId + " not found");
+            }
+            syncEvents(extension.getPlatformClient(companyId, session), null, enableWebhooks);
+        }, progress).run(companyIds);
+    }
+
+    /**
+     * Same as {@link #syncEventsForCompanies} for offline sessions already loaded.
+     */
+    public WebhookSyncReport syncEventsForSessions(Extension extension, Stream<Session> sessions,
+                                                   Boolean enableWebhooks, Consumer<WebhookSyncReport> progress) {
+        return bulkSync(Session::getCompanyId, session -> syncEvents(
+                extension.getPlatformClient(session.getCompanyId(), session), null, enableWebhooks), progress)
+                .run(sessions);
+    }
+
+    private <T> WebhookBulkSync<T> bulkSync(Function<T, String> companyIdOf, Consumer<T> syncCompany,
+                                            Consumer<WebhookSyncReport> progress) {
+        if (!this.isInitialized) {
+            throw new FdkInvalidWebhookConfig(Fields.WEBHOOK_NOT_INITIALISED_ERROR);
+        }
+        WebhookSyncProperties sync = Objects.requireNonNullElseGet(this.webhookProperties.getSync(),
+                                                                   WebhookSyncProperties::new);
+        return new WebhookBulkSync<>(sync, companyIdOf, syncCompany, progress);
+    }
+
+    /**
+     * Same as {@link #syncEvents}, skipped when the company was synced with the same webhook config within
+     * {@code webhook.sync.stamp_ttl_seconds}. The company is stamped in the storage with a hash of the config
+     * only once every register and update call succeeded, a failing one throws before the stamp is written.
+     */
+    public void syncEventsIfStale(PlatformClient platformClient, BaseStorage storage, Boolean enableWebhooks) {
+        if (!this.isInitialized) {
+            throw new FdkInvalidWebhookConfig(Fields.WEBHOOK_NOT_INITIALISED_ERROR);
+        }
+        WebhookSyncProperties sync = this.webhookProperties.getSync();
+        if (Objects.isNull(storage) || Objects.isNull(sync) || sync.getStampTtlSeconds() <= 0) {
+            syncEvents(platformClient, null, enableWebhooks);
+            return;
+        }
+        String companyId = platformClient.getConfig()
+                                         .getCompanyId();
+        String stampKey = Fields.SYNC_STAMP_PREFIX + companyId;
+        String configHash = getConfigHash(enableWebhooks);
+        try {
+            if (configHash.equals(storage.get(stampKey))) {
+                log.debug("Webhook config of company {} unchanged since last sync, sync skipped", companyId);
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Could not read webhook sync stamp of company {}", companyId, e);
+        }
+        syncEvents(platformClient, null, enableWebhooks);
+        try {
+            storage.setex(stampKey, sync.getStampTtlSeconds(), configHash);
+        } catch (RuntimeException e) {
+            log.warn("Could not store webhook sync stamp of company {}", companyId, e);
+        }
+    }
+
+    /**
+     * Drops the sync stamp of a company, so its next {@link #syncEventsIfStale} syncs, e.g. on uninstall.
+     */
+    public void invalidateSyncStamp(String companyId, BaseStorage storage) {
+        try {
+            storage.del(Fields.SYNC_STAMP_PREFIX + companyId);
+        } catch (RuntimeException e) {
+            log.warn("Could not drop webhook sync stamp of company {}", companyId, e);
+        }
+    }
+
+    /**
+     * HMAC-SHA256, keyed by the api secret, of the subscriber config a sync would register: extension, auth
+     * type, webhook URL, criteria and events. A rotated secret changes the hash without the secret itself
+     * being part of the hashed config. Map keys and events are ordered, so equal configs hash alike
+     * whatever their order.
+     */
+    String getConfigHash(Boolean enableWebhooks) {
+        Map<String, Object> config = new TreeMap<>();
+        config.put("cluster", this.extensionProperties.getCluster());
+        config.put("extension_id", this.extensionProperties.getApiKey());
+        config.put("auth_meta", Fields.HMAC);
+        config.put("webhook_url", getWebhookUrl(this.extensionProperties.getBaseUrl(),
+                                                this.webhookProperties.getApiPath()));
+        config.put("notification_email", this.webhookProperties.getNotificationEmail());
+        config.put("subscribed_sales_channel", this.webhookProperties.getSubscribedSalesChannel());
+        config.put("criteria", getCriteria(this.webhookProperties, Collections.emptyList()));
+        config.put("marketplace", this.webhookProperties.getMarketplace());
+        config.put("enable_webhooks", enableWebhooks);
+        try {
+            List<String> events = new ArrayList<>();
+            for (EventMapProperties event : this.webhookProperties.getEventMap()) {
+                Map<String, Object> eventConfig = new TreeMap<>();
+                eventConfig.put("provider", event.getProvider());
+                eventConfig.put("category", event.getCategory());
+                eventConfig.put("name", event.getName());
+                eventConfig.put("version", event.getVersion());
+                eventConfig.put("topic", event.getTopic());
+                eventConfig.put("queue", event.getQueue());
+                eventConfig.put("workflow_name", event.getWorkflowName());
+                eventConfig.put("account_id", event.getAccountId());
+                eventConfig.put("event_bridge_name", event.getEventBridgeName());
+                eventConfig.put("filters", event.getFilters());
+                eventConfig.put("reducer", event.getReducer());
+                events.add(CANONICAL_MAPPER.writeValueAsString(eventConfig));
+            }
+            Collections.sort(events);
+            config.put("events", events);
+            byte[] canonical = CANONICAL_MAPPER.writeValueAsBytes(config);
+            Mac mac = Mac.getInstance(Fields.HMAC_SHA);
+            mac.init(new SecretKeySpec(this.extensionProperties.getApiSecret()
+                                                               .getBytes(StandardCharsets.UTF_8), Fields.HMAC_SHA));
+            return Hex.encodeHexString(mac.doFinal(canonical));
+        } catch (IOException | GeneralSecurityException e) {
+            throw new FdkInvalidWebhookConfig("Failed to hash webhook config. Reason: " + e.getMessage());
+        }
+    }
+
     void syncSubscriberConfig(SubscriberResponse subscriberResponse, String configType, PlatformClient platformClient, Boolean enableWebhooks) {
         try {
 
@@ -175,6 +343,8 @@ public class WebhookService {
         } catch (IOException e) {
             log.error("Exception occurred during Webhook Sync : ", e);
             throw new FdkWebhookRegistrationError("Failed to sync webhook events. Reason: " + e.getMessage());
+        } catch (FdkWebhookRegistrationError e) {
+            throw e;
         } catch (Exception e) {
             throw new RuntimeException(e);
         }
@@ -188,12 +358,7 @@ public class WebhookService {
         res = getPlatformClientCallApiList(platformConfig).registerSubscriberToEventV3(platformConfig.getCompanyId(), payload).execute();
         if(!res.isSuccessful()){
             if(res.code() != 404){
-                String errorMessage = String.format("Request to %s failed with status code %d: %s",
-                        res.raw().request().url(),
-                        res.code(),
-                        res.errorBody().string());
-                log.error(errorMessage);
-                return true;
+                throw registrationError(res);
             }else{
                 return false;
             }
@@ -201,6 +366,15 @@ public class WebhookService {
         return true;
     }
 
+    private FdkWebhookRegistrationError registrationError(Response<?> res) throws IOException {
+        String errorMessage = String.format("Request to %s failed with status code %d: %s",
+                res.raw().request().url(),
+                res.code(),
+                Objects.nonNull(res.errorBody()) ? res.errorBody().string() : null);
+        log.error(errorMessage);
+        return new FdkWebhookRegistrationError(errorMessage);
+    }
+
     SubscriberConfigRequestV3 createRegisterPayloadData(SubscriberConfigContainer subscriberResponseContainer){
         SubscriberConfigRequestV3 payload = new SubscriberConfigRequestV3();
         WebhookConfig config = new WebhookConfig();
@@ -396,13 +570,19 @@ public class WebhookService {
         if (!errorWebhooks.isEmpty()) {
             throw new FdkInvalidWebhookConfig("Webhooks events errors" + errorWebhooks);
         }
+        this.dispatchIndex = new WebhookDispatchIndex(webhookProperties.getEventMap(), this.eventHandlerMap,
+                                                      this.batchEventHandlerMap);
         this.isInitialized = true;
         log.info("Webhook registry initialized");
     }
 
     private SubscriberConfigContainer getSubscriberConfig(PlatformClient platformClient) {
         try {
-            SubscriberConfigList subscriberConfigList = getPlatformClientCallApiList(platformClient.getConfig()).getSubscribersByExtensionId(platformClient.getConfig().getCompanyId(), this.extensionProperties.getApiKey(), null, null).execute().body();
+            Response<SubscriberConfigList> res = getPlatformClientCallApiList(platformClient.getConfig()).getSubscribersByExtensionId(platformClient.getConfig().getCompanyId(), this.extensionProperties.getApiKey(), null, null).execute();
+            if (!res.isSuccessful()) {
+                throw registrationError(res);
+            }
+            SubscriberConfigList subscriberConfigList = res.body();
             SubscriberConfigContainer subscriberConfigContainer = new SubscriberConfigContainer();
 
             if (Objects.nonNull(subscriberConfigList) && CollectionUtils.isNotEmpty(subscriberConfigList.getItems())) {
@@ -509,18 +689,18 @@ public class WebhookService {
     private boolean isConfigurationUpdated(SubscriberConfigRequestV2 subscriberConfig,
                                            WebhookProperties webhookProperties) {
         boolean updated = false;
-        this.associationCriteria = getCriteria(webhookProperties, subscriberConfig.getAssociation()
-                                                                                  .getApplicationId());
-        if (!this.associationCriteria.equals(subscriberConfig.getAssociation()
+        String associationCriteria = getCriteria(webhookProperties, subscriberConfig.getAssociation()
+                                                                                    .getApplicationId());
+        if (!associationCriteria.equals(subscriberConfig.getAssociation()
                                                              .getCriteria())) {
-            if (this.associationCriteria.equals(Criteria.ALL.getValue())) {
+            if (associationCriteria.equals(Criteria.ALL.getValue())) {
                 subscriberConfig.getAssociation()
                                 .setApplicationId(new ArrayList<>());
             }
             log.info("Webhook Association Criteria updated from : " + subscriberConfig.getAssociation()
-                                                                                      .getCriteria() + " to : " + this.associationCriteria);
+                                                                                      .getCriteria() + " to : " + associationCriteria);
             subscriberConfig.getAssociation()
-                            .setCriteria(this.associationCriteria);
+                            .setCriteria(associationCriteria);
             updated = true;
         }
 
@@ -532,14 +712,14 @@ public class WebhookService {
             updated = true;
         }
 
-        this.webhookUrl = getWebhookUrl(this.extensionProperties.getBaseUrl(), this.webhookProperties.getApiPath());
-        if (subscriberConfig.getProvider().equals("rest") && !this.webhookUrl.equals(subscriberConfig.getWebhookUrl())) {
-            log.info("Webhook URL updated from : " + subscriberConfig.getWebhookUrl() + " to : " + this.webhookUrl);
-            subscriberConfig.setWebhookUrl(this.webhookUrl);
+        String webhookUrl = getWebhookUrl(this.extensionProperties.getBaseUrl(), this.webhookProperties.getApiPath());
+        if (subscriberConfig.getProvider().equals("rest") && !webhookUrl.equals(subscriberConfig.getWebhookUrl())) {
+            log.info("Webhook URL updated from : " + subscriberConfig.getWebhookUrl() + " to : " + webhookUrl);
+            subscriberConfig.setWebhookUrl(webhookUrl);
             updated = true;
         }
 
-        if (this.associationCriteria == Criteria.SPECIFIC.getValue()) {
+        if (associationCriteria == Criteria.SPECIFIC.getValue()) {
             if ("marketplace".equals(subscriberConfig.getType()) && !webhookProperties.getMarketplace()) {
                 log.debug(String.format("Type updated from %s to null", subscriberConfig.getType()));
                 subscriberConfig.setType(null);
@@ -697,11 +877,7 @@ public class WebhookService {
             }
         }
         if(!res.isSuccessful()){
-            String errorMessage = String.format("Request to %s failed with status code %d: %s",
-                res.raw().request().url(),
-                res.code(),
-                res.errorBody().string());
-            log.error(errorMessage);
+            throw registrationError(res);
         }
 
         return res;
@@ -726,11 +902,7 @@ public class WebhookService {
             
         }
         if(!res.isSuccessful()){
-            String errorMessage = String.format("Request to %s failed with status code %d: %s",
-                res.raw().request().url(),
-                res.code(),
-                res.errorBody().string());
-            log.error(errorMessage);
+            throw registrationError(res);
         }
         
         return res;
@@ -932,77 +1104,181 @@ public class WebhookService {
         }
     }
 
+    /**
+     * Verifies a webhook delivery and runs its handler.
+     *
+     * @throws FdkWebhookRejected when the delivery can't be taken now, answer it with 429 or 503 so the
+     *                            platform delivers it again later
+     */
     public void processWebhook(HttpServletRequest httpServletRequest) {
         try {
             String signature = httpServletRequest.getHeader(Fields.SIGNATURE);
-            String responseBody = httpServletRequest.getReader()
-                                                    .lines()
-                                                    .collect(Collectors.joining(System.lineSeparator()));
-            log.info("Event Received in Extension : " + responseBody);
-            JSONObject response = new JSONObject(responseBody);
-            String companyID = response.has(Fields.COMPANY_ID) ? response.get(Fields.COMPANY_ID)
-                                                                         .toString() : StringUtils.EMPTY;
-            String applicationID = response.has(Fields.APPLICATION_ID) ? response.get(Fields.APPLICATION_ID)
-                                                                                 .toString() : StringUtils.EMPTY;
-            JSONObject event = response.getJSONObject(Fields.EVENT_OBJECT);
-            if (event.getString(Fields.EVENT_NAME)
-                     .equals(Fields.EVENT_PING)) {
+            WebhookBody webhookBody = WebhookBody.read(httpServletRequest.getInputStream(),
+                                                       httpServletRequest.getContentLength(),
+                                                       this.extensionProperties.getWebhook()
+                                                                               .getMaxBodySize(), signatureMac());
+            WebhookEnvelope envelope = WebhookEnvelope.parse(this.objectMapper.getFactory(), webhookBody.bytes,
+                                                             webhookBody.length);
+            log.info("Event Received in Extension : {} for company {}", envelope.eventName(), envelope.companyId);
+            if (log.isDebugEnabled()) {
+                log.debug("Event body : {}", webhookBody.asString());
+            }
+            if (envelope.isPing()) {
                 return;
             }
-            verifySignature(signature, responseBody);
-            String eventName = event.getString(Fields.EVENT_NAME) + "/" + event.getString(Fields.EVENT_TYPE);
-            String eventCategory = event.has(Fields.EVENT_CATEGORY) ? event.getString(
-                    Fields.EVENT_CATEGORY) : StringUtils.EMPTY;
-            String eventVersion = event.has(Fields.EVENT_VERSION) ? event.getString(
-                    Fields.EVENT_VERSION) : StringUtils.EMPTY;
-            String instanceName = StringUtils.EMPTY;
-            for (EventMapProperties eventMap : this.extensionProperties.getWebhook()
-                                                                       .getEventMap()) {
-                if(eventMap.getProvider().equals("kafka")){
-                    continue;
+            verifySignature(signature, webhookBody.signature);
+            String eventName = envelope.eventName();
+            String eventCategory = envelope.category;
+            String eventVersion = envelope.version;
+            String companyID = envelope.companyId;
+            String applicationID = envelope.applicationId;
+            WebhookPayload payload = new WebhookPayload(webhookBody.bytes, webhookBody.length, this.objectMapper);
+            WebhookDedupe dedupe = webhookDedupe();
+            String dedupeKey = Objects.nonNull(dedupe) ? WebhookDedupe.key(envelope, webhookBody) : null;
+            WebhookDedupe.Claim claim = Objects.nonNull(dedupeKey) ? dedupe.claim(dedupeKey) : null;
+            if (claim == WebhookDedupe.Claim.DONE) {
+                log.info("Duplicate delivery of " + eventName + " skipped");
+                return;
+            }
+            if (claim == WebhookDedupe.Claim.IN_PROGRESS) {
+                throw new FdkWebhookRejected("Event " + eventName + " is still being handled, delivery rejected");
+            }
+            try {
+                WebhookDispatchIndex.Route route = dispatchIndex().lookup(eventName, eventCategory, eventVersion);
+                if (Objects.nonNull(route) && StringUtils.isNotEmpty(route.handlerName) && Objects.nonNull(
+                        route.batchHandler)) {
+                    log.info("Batch handler Chosen for execution " + route.handlerName);
+                    webhookBatcher().add(route.handlerName, route.batchHandler, route.event,
+                                         new WebhookEvent(eventName, companyID, applicationID, payload));
+                    // Batched events are acknowledged here, the batcher retries them on its own
+                    if (Objects.nonNull(dedupeKey)) {
+                        dedupe.complete(dedupeKey);
+                    }
+                } else if (Objects.nonNull(route) && StringUtils.isNotEmpty(route.handlerName) && Objects.nonNull(
+                        route.handler)) {
+                    log.info("Handler Chosen for execution " + route.handlerName);
+                    WebhookExecutor executor = webhookExecutor();
+                    if (Objects.nonNull(executor)) {
+                        executor.submit(route.handlerName, () -> {
+                            try {
+                                route.handler.handle(eventName, payload, companyID, applicationID);
+                                if (Objects.nonNull(dedupeKey)) {
+                                    dedupe.complete(dedupeKey);
+                                }
+                            } catch (RuntimeException e) {
+                                if (Objects.nonNull(dedupeKey)) {
+                                    dedupe.release(dedupeKey);
+                                }
+                                throw e;
+                            }
+                        });
+                    } else {
+                        route.handler.handle(eventName, payload, companyID, applicationID);
+                        if (Objects.nonNull(dedupeKey)) {
+                            dedupe.complete(dedupeKey);
+                        }
+                    }
+                } else {
+                    throw new FdkWebhookHandlerNotFound("Webhook handler not assigned: " + eventName);
                 }
-                if (eventMap.getName()
-                            .equals(eventName) && StringUtils.isNotEmpty(
-                        eventMap.getCategory()) && eventMap.getCategory()
-                                                           .equals(eventCategory) && StringUtils.isNotEmpty(
-                        eventMap.getVersion()) && eventMap.getVersion()
-                                                          .equals(eventVersion)) {
-                    instanceName = eventMap.getHandler();
-                } else if ((eventMap.getName()
-                                    .equals(eventName) && StringUtils.isEmpty(
-                        eventMap.getCategory())) || (eventMap.getName()
-                                                             .equals(eventName) && StringUtils.isEmpty(
-                        eventMap.getVersion()))) {
-                    instanceName = eventMap.getHandler();
-                } else if ((eventMap.getName()
-                                    .equals(eventName) && StringUtils.isEmpty(eventCategory)) || (eventMap.getName()
-                                                                                                          .equals(eventName) && StringUtils.isEmpty(
-                        eventVersion))) {
-                    instanceName = eventMap.getHandler();
+            } catch (RuntimeException e) {
+                if (Objects.nonNull(dedupeKey)) {
+                    dedupe.release(dedupeKey);
                 }
+                throw e;
             }
-            if (StringUtils.isNotEmpty(instanceName) && Objects.nonNull(this.eventHandlerMap.get(instanceName))) {
-                log.info("Handler Chosen for execution " + instanceName);
-                this.eventHandlerMap.get(instanceName)
-                                    .handle(eventName, response, companyID, applicationID);
-            } else {
-                throw new FdkWebhookHandlerNotFound("Webhook handler not assigned: " + eventName);
-            }
+        } catch (FdkWebhookRejected e) {
+            log.warn(e.getMessage());
+            throw e;
         } catch (Exception e) {
             log.error("Exception occurred during Webhook Event processing : ", e);
             throw new FdkWebhookProcessError(e.getMessage());
         }
     }
 
-    private void verifySignature(String headerSignature, String responseBody) {
+    /**
+     * Pool running handlers when {@code webhook.dispatch.async} is set, {@code null} otherwise.
+     */
+    public WebhookExecutor webhookExecutor() {
+        WebhookDispatchProperties dispatch = this.extensionProperties.getWebhook()
+                                                                     .getDispatch();
+        if (Objects.isNull(dispatch) || !dispatch.isAsync()) {
+            return null;
+        }
+        if (Objects.isNull(this.webhookExecutor)) {
+            synchronized (this) {
+                if (Objects.isNull(this.webhookExecutor)) {
+                    this.webhookExecutor = new WebhookExecutor(dispatch);
+                }
+            }
+        }
+        return this.webhookExecutor;
+    }
+
+    /**
+     * Index of handled events when {@code webhook.dedupe.enabled} is set, {@code null} otherwise.
+     */
+    public WebhookDedupe webhookDedupe() {
+        WebhookDedupeProperties dedupe = this.extensionProperties.getWebhook()
+                                                                 .getDedupe();
+        if (Objects.isNull(dedupe) || !dedupe.isEnabled()) {
+            return null;
+        }
+        if (Objects.isNull(this.webhookDedupe)) {
+            synchronized (this) {
+                if (Objects.isNull(this.webhookDedupe)) {
+                    BaseStorage sharedStorage = dedupe.isDistributed() && Objects.nonNull(this.extension)
+                            ? this.extension.getStorage() : null;
+                    this.webhookDedupe = new WebhookDedupe(dedupe, sharedStorage);
+                }
+            }
+        }
+        return this.webhookDedupe;
+    }
+
+    /**
+     * Batches events of event map entries handled by a {@link BatchEventHandler}.
+     */
+    public WebhookBatcher webhookBatcher() {
+        if (Objects.isNull(this.webhookBatcher)) {
+            synchronized (this) {
+                if (Objects.isNull(this.webhookBatcher)) {
+                    WebhookDispatchProperties dispatch = Objects.requireNonNullElseGet(
+                            this.extensionProperties.getWebhook()
+                                                    .getDispatch(), WebhookDispatchProperties::new);
+                    this.webhookBatcher = new WebhookBatcher(dispatch.getThreads(), dispatch.getQueueCapacity(),
+                                                             dispatch.getDrainTimeoutSeconds());
+                }
+            }
+        }
+        return this.webhookBatcher;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (Objects.nonNull(this.webhookBatcher)) {
+            this.webhookBatcher.shutdown();
+        }
+        if (Objects.nonNull(this.webhookExecutor)) {
+            this.webhookExecutor.shutdown();
+        }
+    }
+
+    private WebhookDispatchIndex dispatchIndex() {
+        List<EventMapProperties> eventMap = this.extensionProperties.getWebhook()
+                                                                    .getEventMap();
+        WebhookDispatchIndex index = this.dispatchIndex;
+        if (Objects.isNull(index) || !index.isFor(eventMap)) {
+            index = new WebhookDispatchIndex(eventMap, this.eventHandlerMap, this.batchEventHandlerMap);
+            this.dispatchIndex = index;
+        }
+        return index;
+    }
+
+    private void verifySignature(String headerSignature, byte[] calculatedSignature) {
         try {
-            Mac sha256Hmac = Mac.getInstance(Fields.HMAC_SHA);
-            sha256Hmac.init(new SecretKeySpec(this.extensionProperties.getApiSecret()
-                                                                      .getBytes(StandardCharsets.UTF_8),
-                                              Fields.HMAC_SHA));
-            String calculatedSignature = Hex.encodeHexString(
-                    sha256Hmac.doFinal(responseBody.getBytes(StandardCharsets.UTF_8)));
-            if (!calculatedSignature.equals(headerSignature)) {
+            if (Objects.isNull(headerSignature) || !MessageDigest.isEqual(calculatedSignature,
+                                                                          Hex.decodeHex(headerSignature))) {
                 throw new FdkInvalidHMacError("Signature passed does not match calculated body signature");
             }
         } catch (Exception e) {
@@ -1011,6 +1287,31 @@ public class WebhookService {
         }
     }
 
+    // HMAC of the current api secret, kept per thread and created again when the secret changes
+    private Mac signatureMac() throws GeneralSecurityException {
+        String apiSecret = this.extensionProperties.getApiSecret();
+        SignatureMac signatureMac = SIGNATURE_MAC.get();
+        if (Objects.isNull(signatureMac) || signatureMac.apiSecret != apiSecret) {
+            Mac mac = Mac.getInstance(Fields.HMAC_SHA);
+            mac.init(new SecretKeySpec(apiSecret.getBytes(StandardCharsets.UTF_8), Fields.HMAC_SHA));
+            signatureMac = new SignatureMac(apiSecret, mac);
+            SIGNATURE_MAC.set(signatureMac);
+        }
+        return signatureMac.mac;
+    }
+
+    private static final class SignatureMac {
+
+        final String apiSecret;
+
+        final Mac mac;
+
+        SignatureMac(String apiSecret, Mac mac) {
+            this.apiSecret = apiSecret;
+            this.mac = mac;
+        }
+    }
+
     interface Fields {
         String INVALID_EMAIL = "Invalid or missing notification_email";
         String INVALID_PATH = "Invalid or missing api_path";
@@ -1028,6 +1329,9 @@ public class WebhookService {
         String APPLICATION_ID = "application_id";
         String HMAC_SHA = "HmacSHA256";
         String EVENT_VERSION = "version";
+        String EVENT_ID = "id";
+        String EVENT_TRACE_ID = "trace_id";
+        String SYNC_STAMP_PREFIX = "webhook_sync_stamp:";
         String WEBHOOK_NOT_INITIALISED_ERROR = "Webhook registry not initialized";
     }
 }
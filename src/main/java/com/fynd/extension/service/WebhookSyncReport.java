@@ -0,0 +1,99 @@
+package com.fynd.extension.service;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress and outcome of a bulk webhook sync. Counts are updated while the sync runs, so the report
+ * handed to a progress listener can be read at any time.
+ */
+public class WebhookSyncReport {
+
+    private final long startedAt = System.currentTimeMillis();
+
+    private final AtomicInteger submittedCount = new AtomicInteger();
+
+    private final AtomicInteger succeededCount = new AtomicInteger();
+
+    private final AtomicInteger retriedCount = new AtomicInteger();
+
+    private final Map<String, String> failures = new LinkedHashMap<>();
+
+    private volatile long finishedAt;
+
+    void submitted() {
+        submittedCount.incrementAndGet();
+    }
+
+    void succeeded() {
+        succeededCount.incrementAndGet();
+    }
+
+    void retried() {
+        retriedCount.incrementAndGet();
+    }
+
+    synchronized void failed(String companyId, String reason) {
+        failures.put(companyId, reason);
+    }
+
+    void finish() {
+        finishedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Companies taken from the stream so far.
+     */
+    public int getSubmittedCount() {
+        return submittedCount.get();
+    }
+
+    public int getSucceededCount() {
+        return succeededCount.get();
+    }
+
+    public synchronized int getFailedCount() {
+        return failures.size();
+    }
+
+    /**
+     * Companies taken from the stream whose sync has not succeeded or failed yet.
+     */
+    public int getPendingCount() {
+        return getSubmittedCount() - getSucceededCount() - getFailedCount();
+    }
+
+    /**
+     * Attempts retried after a failure or timeout, over all companies.
+     */
+    public int getRetriedCount() {
+        return retriedCount.get();
+    }
+
+    /**
+     * Reason of the last failed attempt, by company id, in the order companies failed.
+     */
+    public synchronized Map<String, String> getFailures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    public boolean isFinished() {
+        return finishedAt > 0;
+    }
+
+    /**
+     * Time the sync took, or has taken so far while it runs.
+     */
+    public long getDurationMs() {
+        return (isFinished() ? finishedAt : System.currentTimeMillis()) - startedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "WebhookSyncReport{submitted=" + getSubmittedCount() + ", succeeded=" + getSucceededCount()
+                + ", failed=" + getFailedCount() + ", retried=" + getRetriedCount() + ", durationMs="
+                + getDurationMs() + "}";
+    }
+}
@@ -0,0 +1,231 @@
+package com.fynd.extension.session;
+
+import com.fynd.extension.middleware.AccessMode;
+import com.fynd.extension.model.Extension;
+import com.fynd.extension.model.TokenRefreshProperties;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Renews the access tokens of offline sessions shortly before they expire, so that requests rarely wait on
+ * an OAuth round trip.
+ * <p>
+ * Sessions are tracked as they are saved to or read from {@link SessionStorage} and queued by renewal time.
+ * Each renewal time is moved earlier by a random jitter, so that tokens issued together are not renewed
+ * together, and at most {@code concurrency} renewals run at once.
+ */
+@Slf4j
+public class OfflineTokenRefresher implements AutoCloseable {
+
+    private static final AtomicInteger THREAD_COUNTER = new AtomicInteger();
+
+    private static final int MAX_RETRY_SHIFT = 5;
+
+    private final Extension extension;
+
+    private final long leadMillis;
+
+    private final long jitterMillis;
+
+    private final long retryDelayMillis;
+
+    private final DelayQueue<Renewal> queue = new DelayQueue<>();
+
+    // Access token validity each tracked session is queued for, older queue entries are skipped
+    private final Map<String, Long> tracked = new ConcurrentHashMap<>();
+
+    private final Semaphore permits;
+
+    private final ExecutorService workers;
+
+    private final Thread dispatcher;
+
+    private final AtomicLong renewedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private volatile boolean closed;
+
+    public OfflineTokenRefresher(Extension extension, TokenRefreshProperties properties) {
+        this.extension = extension;
+        this.leadMillis = TimeUnit.SECONDS.toMillis(properties.getLeadSeconds());
+        this.jitterMillis = TimeUnit.SECONDS.toMillis(Math.max(0, properties.getJitterSeconds()));
+        this.retryDelayMillis = TimeUnit.SECONDS.toMillis(Math.max(1, properties.getRetryDelaySeconds()));
+        int concurrency = Math.max(1, properties.getConcurrency());
+        this.permits = new Semaphore(concurrency);
+        this.workers = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "fdk-token-refresher-" + THREAD_COUNTER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.dispatcher = new Thread(this::dispatch, "fdk-token-refresher-dispatcher");
+        this.dispatcher.setDaemon(true);
+        this.dispatcher.start();
+    }
+
+    /**
+     * Queues the renewal of an offline session, or moves it when the session holds a different token than
+     * the one queued. Online sessions and sessions without a refresh token are ignored.
+     */
+    public void track(Session session) {
+        if (closed || !isRenewable(session)) {
+            return;
+        }
+        Long validity = session.getAccessTokenValidity();
+        if (Objects.equals(tracked.put(session.getId(), validity), validity)) {
+            return;
+        }
+        long jitter = jitterMillis > 0 ? ThreadLocalRandom.current()
+                                                          .nextLong(jitterMillis) : 0;
+        queue.put(new Renewal(session.getId(), validity, validity - leadMillis - jitter, 0));
+        log.debug("Access token renewal of session {} scheduled in {} ms", session.getId(),
+                  validity - leadMillis - jitter - System.currentTimeMillis());
+    }
+
+    public void untrack(String sessionId) {
+        tracked.remove(sessionId);
+    }
+
+    public int getTrackedCount() {
+        return tracked.size();
+    }
+
+    public long getRenewedCount() {
+        return renewedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        dispatcher.interrupt();
+        workers.shutdown();
+        try {
+            workers.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+        queue.clear();
+        tracked.clear();
+    }
+
+    private boolean isRenewable(Session session) {
+        return Objects.nonNull(session) && Objects.nonNull(session.getId())
+                && Objects.equals(session.getAccessMode(), AccessMode.OFFLINE.getName())
+                && Objects.nonNull(session.getAccessTokenValidity()) && Objects.nonNull(session.getRefreshToken())
+                && (Objects.nonNull(session.getCompanyId()) || Objects.nonNull(session.getOrganizationId()));
+    }
+
+    private void dispatch() {
+        while (!closed) {
+            try {
+                Renewal renewal = queue.take();
+                if (!Objects.equals(tracked.get(renewal.sessionId), renewal.validity)) {
+                    continue;
+                }
+                permits.acquire();
+                try {
+                    workers.execute(() -> {
+                        try {
+                            renew(renewal);
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    permits.release();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void renew(Renewal renewal) {
+        Session session;
+        try {
+            session = new SessionStorage().getSession(renewal.sessionId, extension);
+        } catch (RuntimeException e) {
+            log.warn("Failed to read session {} for access token renewal", renewal.sessionId, e);
+            retry(renewal);
+            return;
+        }
+        if (Objects.isNull(session)) {
+            tracked.remove(renewal.sessionId, renewal.validity);
+            return;
+        }
+        if (!Objects.equals(session.getAccessTokenValidity(), renewal.validity)) {
+            // Renewed by a request or another node since it was queued
+            tracked.remove(renewal.sessionId, renewal.validity);
+            track(session);
+            return;
+        }
+        try {
+            if (extension.refreshOfflineToken(session)) {
+                renewedCount.incrementAndGet();
+                track(session);
+                return;
+            }
+        } catch (RuntimeException e) {
+            log.warn("Failed to renew access token of session {}", renewal.sessionId, e);
+        }
+        failedCount.incrementAndGet();
+        retry(renewal);
+    }
+
+    private void retry(Renewal renewal) {
+        long retryAt = System.currentTimeMillis()
+                + (retryDelayMillis << Math.min(renewal.attempt, MAX_RETRY_SHIFT));
+        if (closed || retryAt >= renewal.validity) {
+            // Left to the renewal on the next request
+            tracked.remove(renewal.sessionId, renewal.validity);
+            return;
+        }
+        queue.put(new Renewal(renewal.sessionId, renewal.validity, retryAt, renewal.attempt + 1));
+    }
+
+    private static final class Renewal implements Delayed {
+
+        final String sessionId;
+
+        final Long validity;
+
+        final long dueAt;
+
+        final int attempt;
+
+        Renewal(String sessionId, Long validity, long dueAt, int attempt) {
+            this.sessionId = sessionId;
+            this.validity = validity;
+            this.dueAt = dueAt;
+            this.attempt = attempt;
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAt - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(dueAt, ((Renewal) other).dueAt);
+        }
+    }
+}
@@ -9,25 +9,30 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Component
 @Slf4j
 public class SessionStorage {
 
+    private static final ObjectMapper DEFAULT_OBJECT_MAPPER = new ObjectMapper();
+
     @Autowired
     Extension extension;
 
-    @Autowired
-    ObjectMapper objectMapper;
+    // Replaced by the application's mapper when injected, instances built with new use a shared default
+    @Autowired(required = false)
+    ObjectMapper objectMapper = DEFAULT_OBJECT_MAPPER;
 
     private void storeSession(Session session, Extension extension) {
+        trackOfflineSession(session, extension);
         try {
             if (!StringUtils.isEmpty(session.getExpires())) {
-                int ttl = (int) (new Date().getTime() - FdkConstants.DATE_FORMAT.get()
-                                                                                .parse(session.getExpires())
-                                                                                .getTime()) / 1000;
-                ttl = Math.abs(Math.round(Math.min(ttl, 0)));
+                int ttl = getSessionTTL(session);
                 extension.getStorage()
                          .setex(session.getId(), ttl, objectMapper.writeValueAsString(session));
                 log.debug("Saving session Id {} with ttl {}", session.getId(), ttl);
@@ -43,12 +48,18 @@ public class SessionStorage {
         }
     }
 
+    private int getSessionTTL(Session session) throws Exception {
+        int ttl = (int) (new Date().getTime() - FdkConstants.DATE_FORMAT.get()
+                                                                        .parse(session.getExpires())
+                                                                        .getTime()) / 1000;
+        return Math.abs(Math.round(Math.min(ttl, 0)));
+    }
+
     public void saveSession(Session session) {
         storeSession(session, extension);
     }
 
     public void saveSession(Session session, Extension extension) {
-        objectMapper = new ObjectMapper();
         storeSession(session, extension);
     }
 
@@ -64,6 +75,14 @@ public class SessionStorage {
     }
 
     public Session getSession(String sessionId) {
+        return readSession(sessionId, extension);
+    }
+
+    public Session getSession(String sessionId, Extension extension) {
+        return readSession(sessionId, extension);
+    }
+
+    private Session readSession(String sessionId, Extension extension) {
         log.debug("Retrieving session for Session ID : {}", sessionId);
         var sessionStr = extension.getStorage()
                                   .get(sessionId);
@@ -72,6 +91,7 @@ public class SessionStorage {
             try {
                 session = objectMapper.readValue(sessionStr, Session.class);
                 session = Session.cloneSession(sessionId, session, false);
+                trackOfflineSession(session, extension);
             } catch (Exception e) {
                 log.error("Exception in reading Session from Storage : ", e);
             }
@@ -79,8 +99,55 @@ public class SessionStorage {
         return session;
     }
 
+    /**
+     * Loads offline sessions for many companies with a single batch read on the storage.
+     * Companies without a stored session are left out of the returned map.
+     */
+    public Map<String, Session> getSessionsFromCompanies(List<String> companyIds) {
+        List<String> sessionIds = new ArrayList<>(companyIds.size());
+        try {
+            for (String companyId : companyIds) {
+                sessionIds.add(Session.generateSessionId(false, new Option(companyId, extension.getExtensionProperties()
+                                                                                               .getCluster())));
+            }
+        } catch (Exception e) {
+            log.error("Exception in generating session IDs for companies", e);
+            return new LinkedHashMap<>();
+        }
+        List<String> sessionStrs = extension.getStorage()
+                                            .mget(sessionIds);
+        Map<String, Session> sessions = new LinkedHashMap<>();
+        for (int i = 0; i < companyIds.size(); i++) {
+            String sessionStr = sessionStrs.get(i);
+            if (StringUtils.isEmpty(sessionStr)) {
+                continue;
+            }
+            try {
+                Session session = objectMapper.readValue(sessionStr, Session.class);
+                session = Session.cloneSession(sessionIds.get(i), session, false);
+                trackOfflineSession(session, extension);
+                sessions.put(companyIds.get(i), session);
+            } catch (Exception e) {
+                log.error("Exception in reading Session from Storage for company ID : {}", companyIds.get(i), e);
+            }
+        }
+        return sessions;
+    }
+
+    private static void trackOfflineSession(Session session, Extension extension) {
+        if (extension != null && extension.getOfflineTokenRefresher() != null) {
+            extension.getOfflineTokenRefresher()
+                     .track(session);
+        }
+    }
+
     public Object deleteSession(String sessionId) {
         log.debug("Deleting session for Session ID in deleteSession() : {}", sessionId);
+        extension.evictSessionClients(sessionId);
+        if (extension.getOfflineTokenRefresher() != null) {
+            extension.getOfflineTokenRefresher()
+                     .untrack(sessionId);
+        }
         return extension.getStorage()
                         .del(sessionId);
     }
@@ -0,0 +1,25 @@
+package com.fynd.extension.storage;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link BaseStorage}. Every operation returns immediately and completes the
+ * returned future once the underlying store has answered.
+ */
+public interface AsyncStorage {
+
+    CompletableFuture<String> getAsync(String key);
+
+    CompletableFuture<String> setAsync(String key, String value);
+
+    CompletableFuture<Object> delAsync(String key);
+
+    CompletableFuture<String> setexAsync(String key, int ttl, String value);
+
+    CompletableFuture<String> hgetAsync(String key, String hashKey);
+
+    CompletableFuture<Object> hsetAsync(String key, String hashKey, String value);
+
+    CompletableFuture<Map<String, Object>> hgetallAsync(String key);
+}
@@ -0,0 +1,111 @@
+package com.fynd.extension.storage;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Runs the blocking calls of any {@link BaseStorage} on a bounded executor so that callers get an
+ * {@link AsyncStorage}. When both the workers and the queue are full, the returned future fails with a
+ * {@link RejectedExecutionException} instead of blocking the caller.
+ */
+@Slf4j
+public class AsyncStorageAdapter implements AsyncStorage, AutoCloseable {
+
+    private static final int DEFAULT_THREADS = 16;
+    private static final int DEFAULT_QUEUE_CAPACITY = 1024;
+
+    private final BaseStorage storage;
+
+    private final ThreadPoolExecutor executor;
+
+    public AsyncStorageAdapter(BaseStorage storage) {
+        this(storage, DEFAULT_THREADS, DEFAULT_QUEUE_CAPACITY);
+    }
+
+    public AsyncStorageAdapter(BaseStorage storage, int threads, int queueCapacity) {
+        this.storage = storage;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                                               new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "fdk-storage-async-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.AbortPolicy());
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public CompletableFuture<String> getAsync(String key) {
+        return submit(() -> storage.get(key));
+    }
+
+    @Override
+    public CompletableFuture<String> setAsync(String key, String value) {
+        return submit(() -> storage.set(key, value));
+    }
+
+    @Override
+    public CompletableFuture<Object> delAsync(String key) {
+        return submit(() -> storage.del(key));
+    }
+
+    @Override
+    public CompletableFuture<String> setexAsync(String key, int ttl, String value) {
+        return submit(() -> storage.setex(key, ttl, value));
+    }
+
+    @Override
+    public CompletableFuture<String> hgetAsync(String key, String hashKey) {
+        return submit(() -> storage.hget(key, hashKey));
+    }
+
+    @Override
+    public CompletableFuture<Object> hsetAsync(String key, String hashKey, String value) {
+        return submit(() -> storage.hset(key, hashKey, value));
+    }
+
+    @Override
+    public CompletableFuture<Map<String, Object>> hgetallAsync(String key) {
+        return submit(() -> storage.hgetall(key));
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue()
+                       .size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread()
+                  .interrupt();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        try {
+            return CompletableFuture.supplyAsync(operation, executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Async storage queue is full, rejecting operation");
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
@@ -3,6 +3,9 @@ package com.fynd.extension.storage;
 import lombok.NoArgsConstructor;
 import org.springframework.util.StringUtils;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 
 @NoArgsConstructor
@@ -45,4 +48,84 @@ public abstract class BaseStorage {
     public Map<String, Object> hgetall(String key) {
         throw new RuntimeException("Method not implemented");
     }
+
+    /**
+     * Remaining time to live of a key in seconds, following Redis TTL semantics:
+     * {@code -1} when the key has no expiry and {@code -2} when it does not exist.
+     */
+    public Long getTTL(String key) {
+        throw new RuntimeException("Method not implemented");
+    }
+
+    /**
+     * Fetches a value together with its remaining TTL in seconds, as {@link #getTTL} reports it, or
+     * {@code null} when the key does not exist. The TTL is {@code null} when the storage does not report it.
+     * Storages backed by a network store should override this with a single round trip.
+     */
+    public Map.Entry<String, Long> getWithTTL(String key) {
+        String value = get(key);
+        if (value == null) {
+            return null;
+        }
+        Long ttl;
+        try {
+            ttl = getTTL(key);
+        } catch (RuntimeException e) {
+            ttl = null;
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(value, ttl);
+    }
+
+    /**
+     * Stores {@code value} with a TTL only if {@code key} does not exist, like Redis {@code SET NX EX}.
+     * Returns {@code true} when the value was stored.
+     */
+    public Boolean setnx(String key, String value, int ttl) {
+        throw new RuntimeException("Method not implemented");
+    }
+
+    /**
+     * Deletes {@code key} only if it holds {@code value}, as one atomic step.
+     * Returns {@code true} when the key was deleted.
+     */
+    public Boolean delIfEquals(String key, String value) {
+        throw new RuntimeException("Method not implemented");
+    }
+
+    /**
+     * Fetches values for multiple keys. The returned list is aligned with {@code keys}
+     * and contains {@code null} for missing keys.
+     * Storages backed by a network store should override this with a single round trip.
+     */
+    public List<String> mget(List<String> keys) {
+        List<String> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            values.add(get(key));
+        }
+        return values;
+    }
+
+    /**
+     * Stores multiple key/value pairs without expiry.
+     */
+    public String mset(Map<String, String> entries) {
+        for (Map.Entry<String, String> entry : entries.entrySet()) {
+            set(entry.getKey(), entry.getValue());
+        }
+        return "OK";
+    }
+
+    /**
+     * Deletes multiple keys and returns the number of keys removed, when the storage reports it.
+     */
+    public Long mdel(List<String> keys) {
+        long deleted = 0;
+        for (String key : keys) {
+            Object result = del(key);
+            if (result instanceof Number) {
+                deleted += ((Number) result).longValue();
+            }
+        }
+        return deleted;
+    }
 }
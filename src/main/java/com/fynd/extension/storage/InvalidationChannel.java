@@ -0,0 +1,24 @@
+package com.fynd.extension.storage;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries key invalidations between the near caches of different nodes.
+ */
+public interface InvalidationChannel extends AutoCloseable {
+
+    /**
+     * Tells other nodes that {@code key} was written or deleted locally.
+     */
+    void publish(String key);
+
+    /**
+     * Starts delivering invalidations. {@code onInvalidate} receives keys without the storage prefix.
+     * {@code onReset} runs whenever invalidations may have been missed, for example after a reconnect,
+     * and must drop every cached key.
+     */
+    void subscribe(Consumer<String> onInvalidate, Runnable onReset);
+
+    @Override
+    void close();
+}
@@ -1,54 +1,305 @@
 package com.fynd.extension.storage;
 
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
 
+/**
+ * In-process storage for single node deployments.
+ * <p>
+ * Keys are spread over lock-striped segments, each an access ordered map, so that concurrent requests
+ * only contend on the segment holding their key. Keys written with {@link #setex} expire lazily on read
+ * and through a small incremental sweep on writes, which takes the soonest expired keys of a segment from
+ * an expiry ordered index. When {@code maxEntries} is set, every segment evicts
+ * its least recently used key once it is over its share of the limit.
+ */
 public class MemoryStorage extends BaseStorage {
 
-    private String prefixKey;
+    private static final int SEGMENT_COUNT = 16;
 
-    private Map<String, Object> data = new HashMap<>();
+    // Number of writes between two incremental sweeps of expired keys
+    private static final int SWEEP_INTERVAL = 64;
+
+    private static final int SWEEP_BATCH_SIZE = 128;
+
+    private final Segment[] segments = new Segment[SEGMENT_COUNT];
+
+    private final AtomicInteger writeCount = new AtomicInteger();
+
+    private final AtomicInteger sweepCursor = new AtomicInteger();
 
     public MemoryStorage(String prefixKey) {
-        super(prefixKey);
+        this(prefixKey, 0);
+    }
 
+    /**
+     * @param maxEntries upper bound on the number of keys held, {@code 0} for no bound
+     */
+    public MemoryStorage(String prefixKey, int maxEntries) {
+        super(prefixKey);
+        int segmentCapacity = maxEntries > 0 ? Math.max(1, (maxEntries + SEGMENT_COUNT - 1) / SEGMENT_COUNT) : 0;
+        for (int i = 0; i < SEGMENT_COUNT; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
     }
 
     @Override
     public String get(String key) {
-        return (String) data.get(this.prefixKey + key);
+        Object value = segmentFor(key).get(super.prefixKey + key);
+        return value instanceof String ? (String) value : null;
     }
 
     @Override
     public String set(String key, String value) {
-        return (String) data.put(this.prefixKey + key, value);
+        Object previous = write(key, value, 0);
+        return previous instanceof String ? (String) previous : null;
     }
 
     @Override
     public Object del(String key) {
-        return data.remove(this.prefixKey + key);
+        return segmentFor(key).remove(super.prefixKey + key);
     }
 
     @Override
     public String setex(String key, int ttl, String value) {
-        return (String) data.put(this.prefixKey + key, value);
+        if (ttl <= 0) {
+            del(key);
+            return null;
+        }
+        Object previous = write(key, value, System.currentTimeMillis() + ttl * 1000L);
+        return previous instanceof String ? (String) previous : null;
+    }
+
+    @Override
+    public Boolean setnx(String key, String value, int ttl) {
+        if (ttl <= 0) {
+            return false;
+        }
+        return segmentFor(key).putIfAbsent(super.prefixKey + key, value, System.currentTimeMillis() + ttl * 1000L);
+    }
+
+    @Override
+    public Boolean delIfEquals(String key, String value) {
+        return segmentFor(key).removeIfEquals(super.prefixKey + key, value);
     }
 
     @Override
     public String hget(String key, String hashKey) {
-        Map<String, Object> hashMap = (HashMap<String, Object>) data.get(this.prefixKey + key);
-        return (String) hashMap.get(hashKey);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Map<String, Object> hashMap = segment.getHash(super.prefixKey + key, false);
+            return hashMap == null ? null : (String) hashMap.get(hashKey);
+        }
     }
 
     @Override
     public Object hset(String key, String hashKey, String value) {
-        Map<String, Object> hashMap = (HashMap<String, Object>) data.get(this.prefixKey + key);
-        hashMap.put(hashKey, value);
-        return data.put(this.prefixKey + key, hashMap);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Map<String, Object> hashMap = segment.getHash(super.prefixKey + key, true);
+            return hashMap.put(hashKey, value) == null ? 1L : 0L;
+        }
     }
 
     @Override
     public Map<String, Object> hgetall(String key) {
-        return (Map) data.get(this.prefixKey + key);
+        Segment segment = segmentFor(key);
+        synchronized (segment) {
+            Map<String, Object> hashMap = segment.getHash(super.prefixKey + key, false);
+            return hashMap == null ? new HashMap<>() : new HashMap<>(hashMap);
+        }
+    }
+
+    @Override
+    public Long getTTL(String key) {
+        return segmentFor(key).ttl(super.prefixKey + key);
+    }
+
+    /**
+     * Drops every key.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Number of keys currently held, including expired keys that were not swept yet.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    private Object write(String key, Object value, long expiresAt) {
+        Object previous = segmentFor(key).put(super.prefixKey + key, value, expiresAt);
+        if (writeCount.incrementAndGet() % SWEEP_INTERVAL == 0) {
+            segments[Math.floorMod(sweepCursor.getAndIncrement(), SEGMENT_COUNT)].sweep(SWEEP_BATCH_SIZE);
+        }
+        return previous;
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = (super.prefixKey + key).hashCode();
+        return segments[Math.floorMod(hash ^ (hash >>> 16), SEGMENT_COUNT)];
+    }
+
+    private static final class Entry {
+
+        final String key;
+
+        final Object value;
+
+        final long expiresAt;
+
+        // Orders entries expiring at the same time
+        final long sequence;
+
+        Entry(String key, Object value, long expiresAt, long sequence) {
+            this.key = key;
+            this.value = value;
+            this.expiresAt = expiresAt;
+            this.sequence = sequence;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt > 0 && expiresAt <= now;
+        }
+    }
+
+    private static final class Segment {
+
+        final LinkedHashMap<String, Entry> entries;
+
+        // Entries with an expiry, soonest first, so that a sweep reaches expired keys wherever they sit in
+        // the access order
+        final TreeSet<Entry> expiries = new TreeSet<>(Comparator.comparingLong((Entry entry) -> entry.expiresAt)
+                                                                .thenComparingLong(entry -> entry.sequence));
+
+        long sequence;
+
+        Segment(int capacity) {
+            this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                    if (capacity > 0 && size() > capacity) {
+                        expiries.remove(eldest.getValue());
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized Object get(String key) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.isExpired(System.currentTimeMillis())) {
+                drop(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized Object put(String key, Object value, long expiresAt) {
+            Entry previous = store(key, value, expiresAt);
+            return previous == null || previous.isExpired(System.currentTimeMillis()) ? null : previous.value;
+        }
+
+        synchronized boolean putIfAbsent(String key, Object value, long expiresAt) {
+            if (get(key) != null) {
+                return false;
+            }
+            store(key, value, expiresAt);
+            return true;
+        }
+
+        synchronized Object remove(String key) {
+            Entry previous = drop(key);
+            return previous == null || previous.isExpired(System.currentTimeMillis()) ? null : previous.value;
+        }
+
+        synchronized boolean removeIfEquals(String key, Object value) {
+            Object current = get(key);
+            if (current == null || !current.equals(value)) {
+                return false;
+            }
+            drop(key);
+            return true;
+        }
+
+        synchronized long ttl(String key) {
+            long now = System.currentTimeMillis();
+            Entry entry = entries.get(key);
+            if (entry == null || entry.isExpired(now)) {
+                return -2;
+            }
+            return entry.expiresAt > 0 ? (entry.expiresAt - now + 999) / 1000 : -1;
+        }
+
+        @SuppressWarnings("unchecked")
+        synchronized Map<String, Object> getHash(String key, boolean create) {
+            Object value = get(key);
+            if (value == null) {
+                if (!create) {
+                    return null;
+                }
+                Map<String, Object> hashMap = new HashMap<>();
+                store(key, hashMap, 0);
+                return hashMap;
+            }
+            if (!(value instanceof Map)) {
+                throw new RuntimeException("WRONGTYPE Operation against a key holding the wrong kind of value");
+            }
+            return (Map<String, Object>) value;
+        }
+
+        synchronized void clear() {
+            entries.clear();
+            expiries.clear();
+        }
+
+        /**
+         * Drops up to {@code batchSize} expired keys, those expired the longest first.
+         */
+        synchronized void sweep(int batchSize) {
+            long now = System.currentTimeMillis();
+            for (int i = 0; i < batchSize && !expiries.isEmpty() && expiries.first()
+                                                                             .isExpired(now); i++) {
+                Entry expired = expiries.pollFirst();
+                entries.remove(expired.key, expired);
+            }
+        }
+
+        private Entry store(String key, Object value, long expiresAt) {
+            Entry entry = new Entry(key, value, expiresAt, sequence++);
+            Entry previous = entries.put(key, entry);
+            if (previous != null && previous.expiresAt > 0) {
+                expiries.remove(previous);
+            }
+            if (expiresAt > 0) {
+                expiries.add(entry);
+            }
+            return previous;
+        }
+
+        private Entry drop(String key) {
+            Entry previous = entries.remove(key);
+            if (previous != null && previous.expiresAt > 0) {
+                expiries.remove(previous);
+            }
+            return previous;
+        }
     }
 }
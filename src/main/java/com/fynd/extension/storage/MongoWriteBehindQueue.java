@@ -0,0 +1,304 @@
+package com.fynd.extension.storage;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.DeleteOneModel;
+import com.mongodb.client.model.ReplaceOneModel;
+import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalescing queue of pending Mongo writes used by {@link MultiLevelStorage} in write-behind mode.
+ * <p>
+ * Only the latest write per key is kept. Pending writes are flushed as unordered {@code bulkWrite}
+ * batches every {@code flushIntervalMs}, or as soon as {@code batchSize} keys are pending. At most
+ * {@code capacity} keys are pending: a write of another key is then written to Mongo on the caller's
+ * thread, which slows callers down to Mongo's pace. When that write fails too, it is queued past the
+ * capacity rather than dropped. A write failing in a batch is retried alone with exponential backoff,
+ * without holding up the other writes.
+ */
+@Slf4j
+class MongoWriteBehindQueue implements AutoCloseable {
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private static final long RETRY_DELAY_MS = 1000;
+
+    private static final long MAX_RETRY_DELAY_MS = 60000;
+
+    private final MongoCollection<Document> mongoCollection;
+
+    private final int batchSize;
+
+    private final int capacity;
+
+    private final Map<String, PendingWrite> pending = new ConcurrentHashMap<>();
+
+    // Keys in pending, reserved before a key is added so that the capacity is never exceeded
+    private final AtomicInteger pendingCount = new AtomicInteger();
+
+    private final AtomicLong syncWriteCount = new AtomicLong();
+
+    // Set once a synchronous write is logged, cleared by the next flush, so a full queue logs once
+    private final AtomicBoolean syncWriteLogged = new AtomicBoolean();
+
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    // Serialises flushes so that an older write of a key never lands after a newer one
+    private final Object flushLock = new Object();
+
+    private volatile boolean closed;
+
+    MongoWriteBehindQueue(MongoCollection<Document> mongoCollection, long flushIntervalMs, int batchSize,
+                          int capacity) {
+        this.mongoCollection = mongoCollection;
+        this.batchSize = batchSize;
+        this.capacity = capacity;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "fdk-mongo-write-behind-" + THREAD_COUNT.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs,
+                                         TimeUnit.MILLISECONDS);
+    }
+
+    void upsert(String key, String value, Date expireAt) {
+        enqueue(key, new PendingWrite(value, expireAt, false));
+    }
+
+    void delete(String key) {
+        enqueue(key, new PendingWrite(null, null, true));
+    }
+
+    /**
+     * Latest write of {@code key} not yet flushed, or {@code null} when there is none.
+     */
+    PendingWrite getPending(String key) {
+        return pending.get(key);
+    }
+
+    int size() {
+        return pendingCount.get();
+    }
+
+    long getSyncWriteCount() {
+        return syncWriteCount.get();
+    }
+
+    /**
+     * Writes every key pending at the time of the call to Mongo, except failed writes waiting for their
+     * retry.
+     */
+    void flush() {
+        flush(false);
+    }
+
+    private void flush(boolean ignoreBackoff) {
+        synchronized (flushLock) {
+            long now = System.currentTimeMillis();
+            List<String> keys = new ArrayList<>(pending.keySet());
+            for (int from = 0; from < keys.size(); from += batchSize) {
+                List<String> batchKeys = new ArrayList<>(batchSize);
+                List<PendingWrite> writes = new ArrayList<>(batchSize);
+                List<WriteModel<Document>> models = new ArrayList<>(batchSize);
+                for (String key : keys.subList(from, Math.min(from + batchSize, keys.size()))) {
+                    PendingWrite write = pending.get(key);
+                    if (write != null && (ignoreBackoff || write.retryAt <= now)) {
+                        batchKeys.add(key);
+                        writes.add(write);
+                        models.add(write.toWriteModel(key));
+                    }
+                }
+                if (models.isEmpty()) {
+                    continue;
+                }
+                Set<Integer> failed = Collections.emptySet();
+                try {
+                    mongoCollection.bulkWrite(models, new BulkWriteOptions().ordered(false));
+                } catch (MongoBulkWriteException e) {
+                    if (e.getWriteErrors()
+                         .isEmpty()) {
+                        // Only the write concern failed, the whole batch is tried again
+                        throw e;
+                    }
+                    // The other writes of an unordered batch were applied, only the failed ones stay queued
+                    failed = new HashSet<>();
+                    for (BulkWriteError error : e.getWriteErrors()) {
+                        failed.add(error.getIndex());
+                        writes.get(error.getIndex())
+                              .failed(now);
+                    }
+                    log.error("{} of {} Mongo writes failed, first on key {}, retried with backoff : {}",
+                              failed.size(), models.size(), batchKeys.get(e.getWriteErrors()
+                                                                            .get(0)
+                                                                            .getIndex()), e.getMessage());
+                }
+                for (int i = 0; i < batchKeys.size(); i++) {
+                    if (!failed.contains(i)) {
+                        remove(batchKeys.get(i), writes.get(i));
+                    }
+                }
+            }
+            syncWriteLogged.set(false);
+        }
+    }
+
+    // A key written again while its write was in flight stays queued with the newer write
+    private void remove(String key, PendingWrite flushed) {
+        pending.computeIfPresent(key, (k, current) -> {
+            if (current != flushed) {
+                return current;
+            }
+            pendingCount.decrementAndGet();
+            return null;
+        });
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+        }
+        flush(true);
+        if (pendingCount.get() > 0) {
+            log.error("{} Mongo writes still failing on close are lost", pendingCount.get());
+        }
+    }
+
+    private void enqueue(String key, PendingWrite write) {
+        if (closed) {
+            // Nothing flushes the queue after shutdown, a failure reaches the caller
+            synchronized (flushLock) {
+                mongoCollection.bulkWrite(List.of(write.toWriteModel(key)));
+            }
+            return;
+        }
+        boolean[] accepted = {true};
+        pending.compute(key, (k, previous) -> {
+            if (previous != null) {
+                return write;
+            }
+            if (pendingCount.getAndUpdate(count -> count < capacity ? count + 1 : count) >= capacity) {
+                accepted[0] = false;
+                return null;
+            }
+            return write;
+        });
+        if (!accepted[0]) {
+            writeNow(key, write);
+        }
+        if (pendingCount.get() >= batchSize && flushRequested.compareAndSet(false, true)) {
+            try {
+                scheduler.execute(() -> {
+                    flushRequested.set(false);
+                    flushQuietly();
+                });
+            } catch (RejectedExecutionException e) {
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    // Under the flush lock, so a later write of the key queued meanwhile is flushed after this one
+    private void writeNow(String key, PendingWrite write) {
+        syncWriteCount.incrementAndGet();
+        if (syncWriteLogged.compareAndSet(false, true)) {
+            log.warn("Mongo write-behind queue is full with {} keys, writing key {} synchronously",
+                     pendingCount.get(), key);
+        }
+        synchronized (flushLock) {
+            try {
+                mongoCollection.bulkWrite(List.of(write.toWriteModel(key)));
+            } catch (RuntimeException e) {
+                log.error("Synchronous Mongo write of key {} failed, queued past the capacity", key, e);
+                // A newer write of the key queued meanwhile wins
+                pending.compute(key, (k, previous) -> {
+                    if (previous != null) {
+                        return previous;
+                    }
+                    pendingCount.incrementAndGet();
+                    return write;
+                });
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Failed to flush pending writes to Mongo, {} keys will be retried", pendingCount.get(), e);
+        }
+    }
+
+    static final class PendingWrite {
+
+        final String value;
+
+        final Date expireAt;
+
+        final boolean delete;
+
+        final Date updatedAt = new Date();
+
+        // Consecutive failed flushes of this write and when it is tried again, only used under the flush lock
+        private int failures;
+
+        private long retryAt;
+
+        PendingWrite(String value, Date expireAt, boolean delete) {
+            this.value = value;
+            this.expireAt = expireAt;
+            this.delete = delete;
+        }
+
+        void failed(long now) {
+            failures++;
+            retryAt = now + Math.min(MAX_RETRY_DELAY_MS, RETRY_DELAY_MS << Math.min(failures - 1, 16));
+        }
+
+        boolean isExpired() {
+            return expireAt != null && expireAt.getTime() < System.currentTimeMillis();
+        }
+
+        WriteModel<Document> toWriteModel(String key) {
+            if (delete) {
+                return new DeleteOneModel<>(new Document("key", key));
+            }
+            Document doc = new Document("key", key).append("value", value)
+                                                   .append("updatedAt", updatedAt);
+            if (expireAt != null) {
+                doc.append("expireAt", expireAt);
+            }
+            return new ReplaceOneModel<>(new Document("key", key), doc, new ReplaceOptions().upsert(true));
+        }
+    }
+}
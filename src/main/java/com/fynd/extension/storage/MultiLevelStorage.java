@@ -1,17 +1,40 @@
 package com.fynd.extension.storage;
 
 import redis.clients.jedis.*;
+import redis.clients.jedis.params.SetParams;
 import com.mongodb.client.*;
+import lombok.extern.slf4j.Slf4j;
 import org.bson.Document;
+import com.mongodb.client.model.BulkWriteOptions;
 import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.ReplaceOptions;
+import com.mongodb.client.model.WriteModel;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
-public class MultiLevelStorage extends BaseStorage {
+/**
+ * Storage keeping values in Redis, backed by Mongo for durability.
+ * <p>
+ * Writes go to Mongo and then Redis. Reads fall back to Mongo when Redis misses, with one Mongo read per
+ * key in flight on a node, and restore the value in Redis with its remaining TTL. A delete leaves a short
+ * lived tombstone in Redis, so a read restoring the key concurrently, on any node, does not bring it back.
+ * With the {@code writeBehind} option set to {@code true}, Redis is written synchronously and Mongo writes are
+ * queued and flushed in batches in the background. {@code flushIntervalMs}, {@code batchSize} and
+ * {@code queueCapacity} tune the queue, a write of a new key finding it full is written to Mongo
+ * synchronously. Call {@link #close()} on shutdown to drain it.
+ */
+@Slf4j
+public class MultiLevelStorage extends BaseStorage implements AutoCloseable {
 
     private boolean isClusterMode;
     private JedisPool jedisPool;
@@ -19,7 +42,15 @@ public class MultiLevelStorage extends BaseStorage {
     private String prefixKey;
     private JedisSentinelPool jedisSentinelPool;
     private MongoCollection<Document> mongoCollection;
+    private MongoWriteBehindQueue writeBehindQueue;
+    private final Map<String, CompletableFuture<String>> mongoLoads = new ConcurrentHashMap<>();
     private static final String DEFAULT_COLLECTION_NAME = "fdk_ext_acc_tokens";
+    private static final String DEFAULT_FLUSH_INTERVAL_MS = "100";
+    private static final String DEFAULT_BATCH_SIZE = "500";
+    private static final String DEFAULT_QUEUE_CAPACITY = "10000";
+    // Outside of any prefix, so a tombstone never collides with a stored key
+    private static final String TOMBSTONE_PREFIX = "fdk_deleted:";
+    private static final int TOMBSTONE_TTL_SECONDS = 300;
 
     public MultiLevelStorage(JedisPool jedisPool, MongoDatabase mongoDatabase, String prefixKey, Map<String, String> options) {
         super(prefixKey);
@@ -29,6 +60,7 @@ public class MultiLevelStorage extends BaseStorage {
         this.prefixKey = prefixKey;
         this.isClusterMode = false;
         ensureTTLIndex();
+        initWriteBehind(options);
     }
 
     public MultiLevelStorage(JedisCluster jedisCluster, MongoDatabase mongoDatabase, String prefixKey, Map<String, String> options) {
@@ -39,6 +71,7 @@ public class MultiLevelStorage extends BaseStorage {
         this.prefixKey = prefixKey;
         this.isClusterMode = true;
         ensureTTLIndex();
+        initWriteBehind(options);
     }
 
     public MultiLevelStorage(JedisSentinelPool jedisSentinelPool, MongoDatabase mongoDatabase, String prefixKey, Map<String, String> options) {
@@ -49,6 +82,7 @@ public class MultiLevelStorage extends BaseStorage {
         this.prefixKey = prefixKey;
         this.isClusterMode = false;
         ensureTTLIndex();
+        initWriteBehind(options);
     }
 
     @Override
@@ -56,10 +90,7 @@ public class MultiLevelStorage extends BaseStorage {
         String redisKey = generateKey(key);
         String value = fetchFromRedis(redisKey);
         if (value == null) {
-            value = fetchFromMongo(redisKey);
-            if (value != null) {
-                set(key, value);
-            }
+            value = loadFromMongo(redisKey);
         }
         return value;
     }
@@ -67,28 +98,249 @@ public class MultiLevelStorage extends BaseStorage {
     @Override
     public String set(String key, String value) {
         String redisKey = generateKey(key);
+        if (writeBehindQueue != null) {
+            String result = storeInRedis(redisKey, value);
+            writeBehindQueue.upsert(redisKey, value, null);
+            return result;
+        }
         storeInMongo(redisKey, value);
         return storeInRedis(redisKey, value);
     }
 
+    // Mongo, or the queue, is cleared and the tombstone set before Redis, see undoBackfillIfDeleted
     @Override
     public Long del(String key) {
         String redisKey = generateKey(key);
-        deleteFromMongo(redisKey);
+        if (writeBehindQueue != null) {
+            writeBehindQueue.delete(redisKey);
+        } else {
+            deleteFromMongo(redisKey);
+        }
+        storeTombstones(List.of(redisKey));
         return deleteFromRedis(redisKey);
     }
 
     @Override
     public String setex(String key, int ttl, String value) {
         String redisKey = generateKey(key);
+        if (writeBehindQueue != null) {
+            String result = storeInRedisWithTTL(redisKey, ttl, value);
+            writeBehindQueue.upsert(redisKey, value, new Date(System.currentTimeMillis() + ttl * 1000L));
+            return result;
+        }
         storeInMongo(redisKey, value, ttl);
         return storeInRedisWithTTL(redisKey, ttl, value);
     }
 
+    // Only Redis holds the key, it is meant for short lived locks that do not need persisting
+    @Override
+    public Boolean setnx(String key, String value, int ttl) {
+        String redisKey = generateKey(key);
+        SetParams params = SetParams.setParams()
+                                    .nx()
+                                    .ex(ttl);
+        if (isClusterMode) {
+            return jedisCluster.set(redisKey, value, params) != null;
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return jedis.set(redisKey, value, params) != null;
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return jedis.set(redisKey, value, params) != null;
+            }
+        }
+    }
+
+    @Override
+    public Boolean delIfEquals(String key, String value) {
+        String redisKey = generateKey(key);
+        String script = RedisStorage.DEL_IF_EQUALS_SCRIPT;
+        if (isClusterMode) {
+            return Long.valueOf(1).equals(jedisCluster.eval(script, 1, redisKey, value));
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return Long.valueOf(1).equals(jedis.eval(script, 1, redisKey, value));
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return Long.valueOf(1).equals(jedis.eval(script, 1, redisKey, value));
+            }
+        }
+    }
+
+    @Override
+    public Long getTTL(String key) {
+        String redisKey = generateKey(key);
+        if (isClusterMode) {
+            return jedisCluster.ttl(redisKey);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return jedis.ttl(redisKey);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return jedis.ttl(redisKey);
+            }
+        }
+    }
+
+    @Override
+    public List<String> mget(List<String> keys) {
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        keys.forEach(key -> redisKeys.add(generateKey(key)));
+        List<String> values = new ArrayList<>(fetchFromRedis(redisKeys));
+        List<String> misses = new ArrayList<>();
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == null) {
+                misses.add(redisKeys.get(i));
+            }
+        }
+        if (misses.isEmpty()) {
+            return values;
+        }
+        Map<String, String> fromMongo = loadFromMongo(misses);
+        for (int i = 0; i < values.size(); i++) {
+            if (values.get(i) == null && fromMongo.containsKey(redisKeys.get(i))) {
+                values.set(i, fromMongo.get(redisKeys.get(i)));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        if (entries.isEmpty()) {
+            return "OK";
+        }
+        Map<String, String> redisEntries = new LinkedHashMap<>();
+        entries.forEach((key, value) -> redisEntries.put(generateKey(key), value));
+        if (writeBehindQueue != null) {
+            String result = storeInRedis(redisEntries);
+            redisEntries.forEach((redisKey, value) -> writeBehindQueue.upsert(redisKey, value, null));
+            return result;
+        }
+        storeInMongo(redisEntries);
+        return storeInRedis(redisEntries);
+    }
+
+    @Override
+    public Long mdel(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0L;
+        }
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        keys.forEach(key -> redisKeys.add(generateKey(key)));
+        if (writeBehindQueue != null) {
+            redisKeys.forEach(writeBehindQueue::delete);
+        } else {
+            mongoCollection.deleteMany(new Document("key", new Document("$in", redisKeys)));
+        }
+        storeTombstones(redisKeys);
+        return deleteFromRedis(redisKeys);
+    }
+
+    /**
+     * Number of Mongo writes queued in write-behind mode and not flushed yet.
+     */
+    public int getPendingWriteCount() {
+        return writeBehindQueue == null ? 0 : writeBehindQueue.size();
+    }
+
+    /**
+     * Mongo writes made on the caller's thread in write-behind mode because the queue was full.
+     */
+    public long getSyncWriteCount() {
+        return writeBehindQueue == null ? 0 : writeBehindQueue.getSyncWriteCount();
+    }
+
+    /**
+     * Flushes the Mongo writes still queued in write-behind mode and stops the background flush.
+     */
+    @Override
+    public void close() {
+        if (writeBehindQueue != null) {
+            writeBehindQueue.close();
+        }
+    }
+
     private String generateKey(String key) {
         return super.prefixKey + key;
     }
 
+    private void initWriteBehind(Map<String, String> options) {
+        if (!Boolean.parseBoolean(options.get("writeBehind"))) {
+            return;
+        }
+        this.writeBehindQueue = new MongoWriteBehindQueue(mongoCollection,
+                Long.parseLong(options.getOrDefault("flushIntervalMs", DEFAULT_FLUSH_INTERVAL_MS)),
+                Integer.parseInt(options.getOrDefault("batchSize", DEFAULT_BATCH_SIZE)),
+                Integer.parseInt(options.getOrDefault("queueCapacity", DEFAULT_QUEUE_CAPACITY)));
+    }
+
+    // A queued delete or an expired queued write hides whatever Mongo still holds
+    private String pendingValue(MongoWriteBehindQueue.PendingWrite pendingWrite) {
+        return pendingWrite.delete || pendingWrite.isExpired() ? null : pendingWrite.value;
+    }
+
+    private MongoWriteBehindQueue.PendingWrite pendingWrite(String redisKey) {
+        return writeBehindQueue == null ? null : writeBehindQueue.getPending(redisKey);
+    }
+
+    private void storeTombstones(List<String> redisKeys) {
+        Map<String, String> tombstones = new HashMap<>();
+        Map<String, SetParams> params = new HashMap<>();
+        for (String redisKey : redisKeys) {
+            tombstones.put(TOMBSTONE_PREFIX + redisKey, "1");
+            params.put(TOMBSTONE_PREFIX + redisKey, SetParams.setParams()
+                                                             .ex(TOMBSTONE_TTL_SECONDS));
+        }
+        if (isClusterMode) {
+            RedisBatches.set(jedisCluster, tombstones, params);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                RedisBatches.set(jedis, tombstones, params);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                RedisBatches.set(jedis, tombstones, params);
+            }
+        }
+    }
+
+    // A value read from Mongo may have been deleted, on any node, before it was restored in Redis. A delete
+    // sets its tombstone before deleting from Redis: a restore finding no tombstone happened before that
+    // Redis delete, and a restored value whose tombstone is found is deleted again unless it was replaced.
+    private void undoBackfillIfDeleted(Map<String, String> restored) {
+        if (restored.isEmpty()) {
+            return;
+        }
+        List<String> redisKeys = new ArrayList<>(restored.keySet());
+        List<String> tombstoneKeys = new ArrayList<>(redisKeys.size());
+        redisKeys.forEach(redisKey -> tombstoneKeys.add(TOMBSTONE_PREFIX + redisKey));
+        List<String> tombstones = fetchFromRedis(tombstoneKeys);
+        for (int i = 0; i < redisKeys.size(); i++) {
+            if (tombstones.get(i) != null) {
+                delIfEqualsInRedis(redisKeys.get(i), restored.get(redisKeys.get(i)));
+            }
+        }
+    }
+
+    private void delIfEqualsInRedis(String redisKey, String value) {
+        String script = RedisStorage.DEL_IF_EQUALS_SCRIPT;
+        if (isClusterMode) {
+            jedisCluster.eval(script, 1, redisKey, value);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                jedis.eval(script, 1, redisKey, value);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.eval(script, 1, redisKey, value);
+            }
+        }
+    }
+
     private void ensureTTLIndex() {
         List<Document> indexes = mongoCollection.listIndexes().into(new java.util.ArrayList<>());
         boolean ttlIndexExists = indexes.stream()
@@ -99,7 +351,106 @@ public class MultiLevelStorage extends BaseStorage {
         }
     }
 
-    private String fetchFromMongo(String key) {
+    // Only one Mongo read per key is in flight on this node, concurrent misses wait for its result. A write
+    // still queued hides whatever Mongo holds.
+    private String loadFromMongo(String redisKey) {
+        CompletableFuture<String> load = new CompletableFuture<>();
+        CompletableFuture<String> inFlight = mongoLoads.putIfAbsent(redisKey, load);
+        if (inFlight != null) {
+            return await(inFlight);
+        }
+        try {
+            MongoWriteBehindQueue.PendingWrite pendingWrite = pendingWrite(redisKey);
+            if (pendingWrite != null) {
+                load.complete(pendingValue(pendingWrite));
+                return pendingValue(pendingWrite);
+            }
+            Document doc = fetchFromMongo(redisKey);
+            String value = null;
+            if (doc != null) {
+                value = doc.getString("value");
+                try {
+                    backfillRedis(redisKey, value, doc.getDate("expireAt"));
+                    undoBackfillIfDeleted(Map.of(redisKey, value));
+                } catch (RuntimeException e) {
+                    // The value read from Mongo is still good, the next read retries the backfill
+                    log.warn("Failed to restore key {} in Redis", redisKey, e);
+                }
+            }
+            load.complete(value);
+            return value;
+        } catch (RuntimeException e) {
+            load.completeExceptionally(e);
+            throw e;
+        } finally {
+            mongoLoads.remove(redisKey, load);
+        }
+    }
+
+    private Map<String, String> loadFromMongo(List<String> redisKeys) {
+        Map<String, CompletableFuture<String>> owned = new LinkedHashMap<>();
+        Map<String, CompletableFuture<String>> joined = new HashMap<>();
+        for (String redisKey : redisKeys) {
+            CompletableFuture<String> load = new CompletableFuture<>();
+            CompletableFuture<String> inFlight = mongoLoads.putIfAbsent(redisKey, load);
+            if (inFlight != null) {
+                joined.put(redisKey, inFlight);
+            } else {
+                owned.put(redisKey, load);
+            }
+        }
+        Map<String, String> valuesByKey = new HashMap<>();
+        try {
+            List<String> toRead = new ArrayList<>();
+            owned.forEach((redisKey, load) -> {
+                MongoWriteBehindQueue.PendingWrite pendingWrite = pendingWrite(redisKey);
+                if (pendingWrite == null) {
+                    toRead.add(redisKey);
+                } else if (pendingValue(pendingWrite) != null) {
+                    valuesByKey.put(redisKey, pendingValue(pendingWrite));
+                }
+            });
+            if (!toRead.isEmpty()) {
+                Map<String, Document> docs = fetchFromMongo(toRead);
+                try {
+                    backfillRedis(docs);
+                    Map<String, String> restored = new HashMap<>();
+                    docs.forEach((redisKey, doc) -> restored.put(redisKey, doc.getString("value")));
+                    undoBackfillIfDeleted(restored);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to restore {} keys in Redis", docs.size(), e);
+                }
+                docs.forEach((redisKey, doc) -> valuesByKey.put(redisKey, doc.getString("value")));
+            }
+            owned.forEach((redisKey, load) -> load.complete(valuesByKey.get(redisKey)));
+        } catch (RuntimeException e) {
+            owned.values()
+                 .forEach(load -> load.completeExceptionally(e));
+            throw e;
+        } finally {
+            owned.forEach(mongoLoads::remove);
+        }
+        joined.forEach((redisKey, load) -> {
+            String value = await(load);
+            if (value != null) {
+                valuesByKey.put(redisKey, value);
+            }
+        });
+        return valuesByKey;
+    }
+
+    private String await(CompletableFuture<String> load) {
+        try {
+            return load.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    private Document fetchFromMongo(String key) {
         Document doc = mongoCollection.find(new Document("key", key)).first();
         if (doc != null) {
             Date expireAt = doc.getDate("expireAt");
@@ -107,11 +458,40 @@ public class MultiLevelStorage extends BaseStorage {
                 deleteFromMongo(key);
                 return null;
             }
-            return doc.getString("value");
+            return doc;
         }
         return null;
     }
 
+    private Map<String, Document> fetchFromMongo(List<String> keys) {
+        Map<String, Document> docsByKey = new HashMap<>();
+        List<String> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (Document doc : mongoCollection.find(new Document("key", new Document("$in", keys)))) {
+            Date expireAt = doc.getDate("expireAt");
+            if (expireAt != null && expireAt.getTime() < now) {
+                expired.add(doc.getString("key"));
+            } else {
+                docsByKey.put(doc.getString("key"), doc);
+            }
+        }
+        if (!expired.isEmpty()) {
+            mongoCollection.deleteMany(new Document("key", new Document("$in", expired)));
+        }
+        return docsByKey;
+    }
+
+    private void storeInMongo(Map<String, String> entries) {
+        Date now = new Date();
+        List<WriteModel<Document>> writes = new ArrayList<>(entries.size());
+        entries.forEach((key, value) -> writes.add(new ReplaceOneModel<>(new Document("key", key),
+                                                                         new Document("key", key)
+                                                                                 .append("value", value)
+                                                                                 .append("updatedAt", now),
+                                                                         new ReplaceOptions().upsert(true))));
+        mongoCollection.bulkWrite(writes, new BulkWriteOptions().ordered(false));
+    }
+
     private void storeInMongo(String key, String value, int ttl) {
         Date now = new Date();
         Date expireAt = new Date(now.getTime() + (ttl * 1000L));
@@ -186,6 +566,103 @@ public class MultiLevelStorage extends BaseStorage {
         }
     }
 
+    private List<String> fetchFromRedis(List<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (isClusterMode) {
+            return RedisBatches.mget(jedisCluster, keys);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return RedisBatches.mget(jedis, keys);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return RedisBatches.mget(jedis, keys);
+            }
+        }
+    }
+
+    // Restores a value read from Mongo with its remaining TTL. NX keeps a newer value written meanwhile.
+    private void backfillRedis(String key, String value, Date expireAt) {
+        SetParams params = backfillParams(expireAt);
+        if (params == null) {
+            return;
+        }
+        if (isClusterMode) {
+            jedisCluster.set(key, value, params);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                jedis.set(key, value, params);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                jedis.set(key, value, params);
+            }
+        }
+    }
+
+    private void backfillRedis(Map<String, Document> docsByKey) {
+        if (docsByKey.isEmpty()) {
+            return;
+        }
+        Map<String, String> values = new HashMap<>();
+        Map<String, SetParams> params = new HashMap<>();
+        docsByKey.forEach((key, doc) -> {
+            values.put(key, doc.getString("value"));
+            params.put(key, backfillParams(doc.getDate("expireAt")));
+        });
+        if (isClusterMode) {
+            RedisBatches.set(jedisCluster, values, params);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                RedisBatches.set(jedis, values, params);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                RedisBatches.set(jedis, values, params);
+            }
+        }
+    }
+
+    private SetParams backfillParams(Date expireAt) {
+        SetParams params = SetParams.setParams()
+                                    .nx();
+        if (expireAt == null) {
+            return params;
+        }
+        long remainingSeconds = (expireAt.getTime() - System.currentTimeMillis() + 999) / 1000;
+        return remainingSeconds > 0 ? params.ex(remainingSeconds) : null;
+    }
+
+    private String storeInRedis(Map<String, String> entries) {
+        if (isClusterMode) {
+            return RedisBatches.mset(jedisCluster, entries);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return RedisBatches.mset(jedis, entries);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return RedisBatches.mset(jedis, entries);
+            }
+        }
+    }
+
+    private Long deleteFromRedis(List<String> keys) {
+        if (isClusterMode) {
+            return RedisBatches.del(jedisCluster, keys);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return RedisBatches.del(jedis, keys);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return RedisBatches.del(jedis, keys);
+            }
+        }
+    }
+
     private void deleteFromMongo(String key) {
         mongoCollection.deleteOne(new Document("key", key));
     }
@@ -0,0 +1,251 @@
+package com.fynd.extension.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process cache in front of any {@link BaseStorage}, typically {@link RedisStorage} or
+ * {@link MultiLevelStorage}.
+ * <p>
+ * String values read through {@link #get} are kept locally for at most {@code maxTtlSeconds}, and never
+ * longer than the remaining TTL of the key in the backing storage, read along with the value. A read
+ * racing an invalidation of its key does not cache what it read, reads of other keys are not affected. Local writes invalidate the local copy
+ * and, when an {@link InvalidationChannel} is given, the copies held by other nodes. Hash operations are
+ * passed straight through.
+ */
+public class NearCacheStorage extends BaseStorage implements AutoCloseable {
+
+    private final BaseStorage delegate;
+
+    private final MemoryStorage localCache;
+
+    private final int maxTtlSeconds;
+
+    private final InvalidationChannel invalidationChannel;
+
+    // Token of the latest miss of each key being read. A miss fills the cache only while its token is still
+    // registered, an invalidation removes it under the same lock as the fill.
+    private final ConcurrentHashMap<String, Object> fills = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder invalidations = new LongAdder();
+
+    public NearCacheStorage(BaseStorage delegate, int maxEntries, int maxTtlSeconds) {
+        this(delegate, maxEntries, maxTtlSeconds, null);
+    }
+
+    public NearCacheStorage(BaseStorage delegate, int maxEntries, int maxTtlSeconds,
+                            InvalidationChannel invalidationChannel) {
+        super(null);
+        this.delegate = delegate;
+        this.localCache = new MemoryStorage(null, maxEntries);
+        this.maxTtlSeconds = maxTtlSeconds;
+        this.invalidationChannel = invalidationChannel;
+        if (invalidationChannel != null) {
+            invalidationChannel.subscribe(this::invalidate, this::invalidateAll);
+        }
+    }
+
+    @Override
+    public String get(String key) {
+        String value = localCache.get(key);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        misses.increment();
+        Object fill = new Object();
+        fills.put(key, fill);
+        try {
+            Map.Entry<String, Long> stored = delegate.getWithTTL(key);
+            if (stored == null) {
+                return null;
+            }
+            int ttl = localTTL(stored.getValue());
+            if (ttl > 0) {
+                fills.computeIfPresent(key, (k, registered) -> {
+                    if (registered == fill) {
+                        localCache.setex(key, ttl, stored.getKey());
+                    }
+                    return registered;
+                });
+            }
+            return stored.getKey();
+        } finally {
+            fills.remove(key, fill);
+        }
+    }
+
+    @Override
+    public String set(String key, String value) {
+        String result = delegate.set(key, value);
+        invalidateEverywhere(key);
+        return result;
+    }
+
+    @Override
+    public Object del(String key) {
+        Object result = delegate.del(key);
+        invalidateEverywhere(key);
+        return result;
+    }
+
+    @Override
+    public String setex(String key, int ttl, String value) {
+        String result = delegate.setex(key, ttl, value);
+        invalidateEverywhere(key);
+        return result;
+    }
+
+    @Override
+    public Boolean setnx(String key, String value, int ttl) {
+        Boolean stored = delegate.setnx(key, value, ttl);
+        if (Boolean.TRUE.equals(stored)) {
+            invalidateEverywhere(key);
+        }
+        return stored;
+    }
+
+    @Override
+    public Boolean delIfEquals(String key, String value) {
+        Boolean deleted = delegate.delIfEquals(key, value);
+        if (Boolean.TRUE.equals(deleted)) {
+            invalidateEverywhere(key);
+        }
+        return deleted;
+    }
+
+    @Override
+    public String hget(String key, String hashKey) {
+        return delegate.hget(key, hashKey);
+    }
+
+    @Override
+    public Object hset(String key, String hashKey, String value) {
+        return delegate.hset(key, hashKey, value);
+    }
+
+    @Override
+    public Map<String, Object> hgetall(String key) {
+        return delegate.hgetall(key);
+    }
+
+    @Override
+    public Long getTTL(String key) {
+        return delegate.getTTL(key);
+    }
+
+    @Override
+    public List<String> mget(List<String> keys) {
+        List<String> values = new ArrayList<>(keys.size());
+        List<String> missingKeys = new ArrayList<>();
+        for (String key : keys) {
+            String value = localCache.get(key);
+            values.add(value);
+            if (value == null) {
+                missingKeys.add(key);
+            }
+        }
+        hits.add(keys.size() - missingKeys.size());
+        misses.add(missingKeys.size());
+        if (missingKeys.isEmpty()) {
+            return values;
+        }
+        // Batch reads are not cached locally, it would take one TTL lookup per key
+        List<String> fetched = delegate.mget(missingKeys);
+        for (int i = 0, j = 0; i < values.size(); i++) {
+            if (values.get(i) == null) {
+                values.set(i, fetched.get(j++));
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        String result = delegate.mset(entries);
+        entries.keySet()
+               .forEach(this::invalidateEverywhere);
+        return result;
+    }
+
+    @Override
+    public Long mdel(List<String> keys) {
+        Long result = delegate.mdel(keys);
+        keys.forEach(this::invalidateEverywhere);
+        return result;
+    }
+
+    /**
+     * Drops the local copy of {@code key}.
+     */
+    public void invalidate(String key) {
+        invalidations.increment();
+        fills.remove(key);
+        localCache.del(key);
+    }
+
+    /**
+     * Drops every local copy.
+     */
+    public void invalidateAll() {
+        invalidations.increment();
+        fills.clear();
+        localCache.clear();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    public double getHitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    public int getLocalSize() {
+        return localCache.size();
+    }
+
+    public BaseStorage getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void close() {
+        if (invalidationChannel != null) {
+            invalidationChannel.close();
+        }
+        localCache.clear();
+    }
+
+    private void invalidateEverywhere(String key) {
+        invalidate(key);
+        if (invalidationChannel != null) {
+            invalidationChannel.publish(key);
+        }
+    }
+
+    // The remaining TTL is null when the backing storage does not report it
+    private int localTTL(Long remaining) {
+        if (remaining == null || remaining == -1) {
+            return maxTtlSeconds;
+        }
+        return (int) Math.min(remaining, maxTtlSeconds);
+    }
+}
@@ -0,0 +1,183 @@
+package com.fynd.extension.storage;
+
+import redis.clients.jedis.ClusterPipeline;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.SetParams;
+import redis.clients.jedis.util.JedisClusterCRC16;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Multi-key commands of the Redis backed storages, split into commands of at most {@link #CHUNK_SIZE}
+ * keys sent on one pipeline, so a single command never blocks Redis for long while a batch still takes a
+ * single round trip.
+ * <p>
+ * In cluster mode keys are grouped per hash slot first, since a command must not span slots, and the
+ * cluster pipeline sends the commands of each node together: one round trip per node, not per slot.
+ */
+final class RedisBatches {
+
+    // Keys sent by a single command
+    static final int CHUNK_SIZE = 500;
+
+    private RedisBatches() {
+    }
+
+    static List<String> mget(Jedis jedis, List<String> keys) {
+        if (keys.size() <= CHUNK_SIZE) {
+            return jedis.mget(keys.toArray(new String[0]));
+        }
+        List<Response<List<String>>> responses = new ArrayList<>();
+        Pipeline pipeline = jedis.pipelined();
+        for (List<String> chunk : chunks(keys)) {
+            responses.add(pipeline.mget(chunk.toArray(new String[0])));
+        }
+        pipeline.sync();
+        List<String> values = new ArrayList<>(keys.size());
+        responses.forEach(response -> values.addAll(response.get()));
+        return values;
+    }
+
+    static List<String> mget(JedisCluster jedisCluster, List<String> keys) {
+        List<List<String>> chunks = new ArrayList<>();
+        List<Response<List<String>>> responses = new ArrayList<>();
+        try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+            for (List<String> slotKeys : groupBySlot(keys)) {
+                for (List<String> chunk : chunks(slotKeys)) {
+                    chunks.add(chunk);
+                    responses.add(pipeline.mget(chunk.toArray(new String[0])));
+                }
+            }
+            pipeline.sync();
+        }
+        Map<String, String> valuesByKey = new HashMap<>();
+        for (int c = 0; c < chunks.size(); c++) {
+            List<String> chunk = chunks.get(c);
+            List<String> chunkValues = responses.get(c)
+                                                .get();
+            for (int i = 0; i < chunk.size(); i++) {
+                valuesByKey.put(chunk.get(i), chunkValues.get(i));
+            }
+        }
+        List<String> values = new ArrayList<>(keys.size());
+        keys.forEach(key -> values.add(valuesByKey.get(key)));
+        return values;
+    }
+
+    static String mset(Jedis jedis, Map<String, String> entries) {
+        List<String> keys = new ArrayList<>(entries.keySet());
+        if (keys.size() <= CHUNK_SIZE) {
+            return jedis.mset(keysValues(keys, entries));
+        }
+        Pipeline pipeline = jedis.pipelined();
+        for (List<String> chunk : chunks(keys)) {
+            pipeline.mset(keysValues(chunk, entries));
+        }
+        pipeline.sync();
+        return "OK";
+    }
+
+    static String mset(JedisCluster jedisCluster, Map<String, String> entries) {
+        try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+            for (List<String> slotKeys : groupBySlot(new ArrayList<>(entries.keySet()))) {
+                for (List<String> chunk : chunks(slotKeys)) {
+                    pipeline.mset(keysValues(chunk, entries));
+                }
+            }
+            pipeline.sync();
+        }
+        return "OK";
+    }
+
+    static long del(Jedis jedis, List<String> keys) {
+        if (keys.size() <= CHUNK_SIZE) {
+            return jedis.del(keys.toArray(new String[0]));
+        }
+        List<Response<Long>> responses = new ArrayList<>();
+        Pipeline pipeline = jedis.pipelined();
+        for (List<String> chunk : chunks(keys)) {
+            responses.add(pipeline.del(chunk.toArray(new String[0])));
+        }
+        pipeline.sync();
+        return sum(responses);
+    }
+
+    static long del(JedisCluster jedisCluster, List<String> keys) {
+        List<Response<Long>> responses = new ArrayList<>();
+        try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+            for (List<String> slotKeys : groupBySlot(keys)) {
+                for (List<String> chunk : chunks(slotKeys)) {
+                    responses.add(pipeline.del(chunk.toArray(new String[0])));
+                }
+            }
+            pipeline.sync();
+        }
+        return sum(responses);
+    }
+
+    /**
+     * Sets every key with its own params, a key without params is skipped.
+     */
+    static void set(Jedis jedis, Map<String, String> entries, Map<String, SetParams> params) {
+        Pipeline pipeline = jedis.pipelined();
+        entries.forEach((key, value) -> {
+            if (params.get(key) != null) {
+                pipeline.set(key, value, params.get(key));
+            }
+        });
+        pipeline.sync();
+    }
+
+    static void set(JedisCluster jedisCluster, Map<String, String> entries, Map<String, SetParams> params) {
+        try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+            entries.forEach((key, value) -> {
+                if (params.get(key) != null) {
+                    pipeline.set(key, value, params.get(key));
+                }
+            });
+            pipeline.sync();
+        }
+    }
+
+    private static List<List<String>> groupBySlot(List<String> keys) {
+        Map<Integer, List<String>> keysBySlot = new LinkedHashMap<>();
+        for (String key : keys) {
+            keysBySlot.computeIfAbsent(JedisClusterCRC16.getSlot(key), slot -> new ArrayList<>())
+                      .add(key);
+        }
+        return new ArrayList<>(keysBySlot.values());
+    }
+
+    private static List<List<String>> chunks(List<String> keys) {
+        List<List<String>> chunks = new ArrayList<>();
+        for (int from = 0; from < keys.size(); from += CHUNK_SIZE) {
+            chunks.add(keys.subList(from, Math.min(from + CHUNK_SIZE, keys.size())));
+        }
+        return chunks;
+    }
+
+    private static String[] keysValues(List<String> keys, Map<String, String> entries) {
+        String[] keysValues = new String[keys.size() * 2];
+        int i = 0;
+        for (String key : keys) {
+            keysValues[i++] = key;
+            keysValues[i++] = entries.get(key);
+        }
+        return keysValues;
+    }
+
+    private static long sum(List<Response<Long>> responses) {
+        long total = 0;
+        for (Response<Long> response : responses) {
+            total += response.get();
+        }
+        return total;
+    }
+}
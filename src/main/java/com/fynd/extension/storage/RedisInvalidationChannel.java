@@ -0,0 +1,178 @@
+package com.fynd.extension.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPubSub;
+import redis.clients.jedis.JedisSentinelPool;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Redis pub/sub based {@link InvalidationChannel}.
+ * <p>
+ * By default every local write is published on {@code channel} and peers drop the key. With
+ * {@code keyspaceNotifications} enabled the channel instead listens to Redis keyspace events for the
+ * storage prefix. That also catches writes made outside this library, but it needs
+ * {@code notify-keyspace-events} to include {@code K$g} on the server. Keyspace events are only received
+ * from the node a subscription lands on, so they are rejected in cluster mode.
+ */
+@Slf4j
+public class RedisInvalidationChannel implements InvalidationChannel {
+
+    private static final String DEFAULT_CHANNEL = "fdk_ext_cache_invalidation";
+    private static final String SEPARATOR = "|";
+    private static final long RECONNECT_DELAY_MS = 1000;
+
+    private final JedisPool jedisPool;
+    private final JedisCluster jedisCluster;
+    private final JedisSentinelPool jedisSentinelPool;
+    private final String channel;
+    private final String prefixKey;
+    private final boolean keyspaceNotifications;
+    // Identifies messages published by this node so that they are not applied twice
+    private final String nodeId = UUID.randomUUID()
+                                      .toString();
+
+    private volatile boolean running;
+    private volatile JedisPubSub pubSub;
+    private Thread listenerThread;
+
+    public RedisInvalidationChannel(JedisPool jedisPool, String prefixKey) {
+        this(jedisPool, null, null, DEFAULT_CHANNEL, prefixKey, false);
+    }
+
+    public RedisInvalidationChannel(JedisCluster jedisCluster, String prefixKey) {
+        this(null, jedisCluster, null, DEFAULT_CHANNEL, prefixKey, false);
+    }
+
+    public RedisInvalidationChannel(JedisSentinelPool jedisSentinelPool, String prefixKey) {
+        this(null, null, jedisSentinelPool, DEFAULT_CHANNEL, prefixKey, false);
+    }
+
+    public RedisInvalidationChannel(JedisPool jedisPool, JedisCluster jedisCluster, JedisSentinelPool jedisSentinelPool,
+                                    String channel, String prefixKey, boolean keyspaceNotifications) {
+        if (keyspaceNotifications && jedisCluster != null) {
+            throw new IllegalArgumentException("Keyspace notifications are only received from a single cluster "
+                                                       + "node, use RedisTrackingInvalidationChannel in cluster mode");
+        }
+        this.jedisPool = jedisPool;
+        this.jedisCluster = jedisCluster;
+        this.jedisSentinelPool = jedisSentinelPool;
+        this.channel = channel;
+        this.prefixKey = prefixKey == null || prefixKey.isEmpty() ? "" : prefixKey + ":";
+        this.keyspaceNotifications = keyspaceNotifications;
+    }
+
+    @Override
+    public void publish(String key) {
+        if (keyspaceNotifications) {
+            return; // Redis publishes keyspace events on its own
+        }
+        String message = nodeId + SEPARATOR + key;
+        try {
+            if (jedisCluster != null) {
+                jedisCluster.publish(channel, message);
+            } else if (jedisSentinelPool != null) {
+                try (Jedis jedis = jedisSentinelPool.getResource()) {
+                    jedis.publish(channel, message);
+                }
+            } else {
+                try (Jedis jedis = jedisPool.getResource()) {
+                    jedis.publish(channel, message);
+                }
+            }
+        } catch (Exception e) {
+            log.error("Failed to publish cache invalidation for key {}", key, e);
+        }
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<String> onInvalidate, Runnable onReset) {
+        if (running) {
+            throw new IllegalStateException("Invalidation channel is already subscribed");
+        }
+        running = true;
+        listenerThread = new Thread(() -> listen(onInvalidate, onReset), "fdk-cache-invalidation");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        JedisPubSub current = pubSub;
+        if (current != null && current.isSubscribed()) {
+            if (keyspaceNotifications) {
+                current.punsubscribe();
+            } else {
+                current.unsubscribe();
+            }
+        }
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    private void listen(Consumer<String> onInvalidate, Runnable onReset) {
+        while (running) {
+            pubSub = new JedisPubSub() {
+                @Override
+                public void onMessage(String channel, String message) {
+                    int separator = message.indexOf(SEPARATOR);
+                    if (separator > 0 && !message.substring(0, separator)
+                                                 .equals(nodeId)) {
+                        onInvalidate.accept(message.substring(separator + 1));
+                    }
+                }
+
+                @Override
+                public void onPMessage(String pattern, String channel, String message) {
+                    String redisKey = channel.substring(channel.indexOf("__:") + 3);
+                    if (redisKey.startsWith(prefixKey)) {
+                        onInvalidate.accept(redisKey.substring(prefixKey.length()));
+                    }
+                }
+            };
+            try {
+                subscribeBlocking(pubSub);
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("Cache invalidation subscription lost, reconnecting", e);
+                }
+            }
+            // Messages sent while we were not subscribed are lost, so nothing cached can be trusted
+            onReset.run();
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread()
+                          .interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void subscribeBlocking(JedisPubSub jedisPubSub) {
+        String keyspacePattern = "__keyspace@*__:" + prefixKey + "*";
+        if (jedisCluster != null) {
+            if (keyspaceNotifications) {
+                jedisCluster.psubscribe(jedisPubSub, keyspacePattern);
+            } else {
+                jedisCluster.subscribe(jedisPubSub, channel);
+            }
+            return;
+        }
+        try (Jedis jedis = jedisSentinelPool != null ? jedisSentinelPool.getResource() : jedisPool.getResource()) {
+            if (keyspaceNotifications) {
+                jedis.psubscribe(jedisPubSub, keyspacePattern);
+            } else {
+                jedis.subscribe(jedisPubSub, channel);
+            }
+        }
+    }
+}
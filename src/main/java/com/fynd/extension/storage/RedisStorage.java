@@ -3,8 +3,16 @@ package com.fynd.extension.storage;
 
 import redis.clients.jedis.*;
 import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.params.SetParams;
 import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.util.JedisClusterCRC16;
 
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -16,6 +24,9 @@ public class RedisStorage extends BaseStorage {
     private String prefixKey;
     private JedisSentinelPool jedisSentinelPool;
 
+    static final String DEL_IF_EQUALS_SCRIPT =
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end";
+
     public RedisStorage(JedisPool jedisPool, String prefixKey) {
         super(prefixKey);
         this.jedisPool = jedisPool;
@@ -142,10 +153,108 @@ public class RedisStorage extends BaseStorage {
         }
     }
 
-    // Add TTL method
+    @Override
+    public List<String> mget(List<String> keys) {
+        if (keys.isEmpty()) {
+            return new ArrayList<>();
+        }
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        keys.forEach(key -> redisKeys.add(super.prefixKey + key));
+        if (isClusterMode) {
+            return RedisBatches.mget(jedisCluster, redisKeys);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return RedisBatches.mget(jedis, redisKeys);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return RedisBatches.mget(jedis, redisKeys);
+            }
+        }
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        if (entries.isEmpty()) {
+            return "OK";
+        }
+        Map<String, String> redisEntries = new LinkedHashMap<>();
+        entries.forEach((key, value) -> redisEntries.put(super.prefixKey + key, value));
+        if (isClusterMode) {
+            return RedisBatches.mset(jedisCluster, redisEntries);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return RedisBatches.mset(jedis, redisEntries);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return RedisBatches.mset(jedis, redisEntries);
+            }
+        }
+    }
+
+    @Override
+    public Long mdel(List<String> keys) {
+        if (keys.isEmpty()) {
+            return 0L;
+        }
+        List<String> redisKeys = new ArrayList<>(keys.size());
+        keys.forEach(key -> redisKeys.add(super.prefixKey + key));
+        if (isClusterMode) {
+            return RedisBatches.del(jedisCluster, redisKeys);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return RedisBatches.del(jedis, redisKeys);
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return RedisBatches.del(jedis, redisKeys);
+            }
+        }
+    }
+
+    @Override
+    public Boolean setnx(String key, String value, int ttl) {
+        SetParams params = SetParams.setParams()
+                                    .nx()
+                                    .ex(ttl);
+        if (isClusterMode) {
+            return jedisCluster.set(super.prefixKey + key, value, params) != null;
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return jedis.set(super.prefixKey + key, value, params) != null;
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return jedis.set(super.prefixKey + key, value, params) != null;
+            }
+        }
+    }
+
+    @Override
+    public Boolean delIfEquals(String key, String value) {
+        String redisKey = super.prefixKey + key;
+        if (isClusterMode) {
+            return Long.valueOf(1).equals(jedisCluster.eval(DEL_IF_EQUALS_SCRIPT, 1, redisKey, value));
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return Long.valueOf(1).equals(jedis.eval(DEL_IF_EQUALS_SCRIPT, 1, redisKey, value));
+            }
+        } else {
+            try (Jedis jedis = jedisPool.getResource()) {
+                return Long.valueOf(1).equals(jedis.eval(DEL_IF_EQUALS_SCRIPT, 1, redisKey, value));
+            }
+        }
+    }
+
+    @Override
     public Long getTTL(String key) {
         if (isClusterMode) {
             return jedisCluster.ttl(super.prefixKey + key);
+        } else if (jedisSentinelPool != null) {
+            try (Jedis jedis = jedisSentinelPool.getResource()) {
+                return jedis.ttl(super.prefixKey + key);
+            }
         } else {
             try (Jedis jedis = jedisPool.getResource()) {
                 return jedis.ttl(super.prefixKey + key);
@@ -153,6 +262,38 @@ public class RedisStorage extends BaseStorage {
         }
     }
 
+    @Override
+    public Map.Entry<String, Long> getWithTTL(String key) {
+        String redisKey = super.prefixKey + key;
+        Response<String> value;
+        Response<Long> ttl;
+        if (isClusterMode) {
+            // Both commands go to the node of the key
+            try (ClusterPipeline pipeline = jedisCluster.pipelined()) {
+                value = pipeline.get(redisKey);
+                ttl = pipeline.ttl(redisKey);
+                pipeline.sync();
+            }
+        } else {
+            try (Jedis jedis = jedisSentinelPool != null ? jedisSentinelPool.getResource() : jedisPool.getResource()) {
+                Pipeline pipeline = jedis.pipelined();
+                value = pipeline.get(redisKey);
+                ttl = pipeline.ttl(redisKey);
+                pipeline.sync();
+            }
+        }
+        return value.get() == null ? null : new AbstractMap.SimpleImmutableEntry<>(value.get(), ttl.get());
+    }
+
+    /**
+     * Wraps this storage in a {@link NearCacheStorage} kept in sync through Redis client side caching.
+     * Redis pushes an invalidation for every key under the prefix that changes, whichever client wrote it.
+     */
+    public NearCacheStorage withClientSideCaching(int maxEntries, int maxTtlSeconds) {
+        return new NearCacheStorage(this, maxEntries, maxTtlSeconds,
+                                    new RedisTrackingInvalidationChannel(jedisPool, jedisCluster,
+                                                                         jedisSentinelPool, super.prefixKey));
+    }
 
     public String getFirstKey(String keyPattern) {
         String pattern = super.prefixKey + keyPattern;
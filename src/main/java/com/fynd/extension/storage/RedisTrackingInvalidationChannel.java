@@ -0,0 +1,308 @@
+package com.fynd.extension.storage;
+
+import lombok.extern.slf4j.Slf4j;
+import redis.clients.jedis.BuilderFactory;
+import redis.clients.jedis.CommandArguments;
+import redis.clients.jedis.CommandObject;
+import redis.clients.jedis.Connection;
+import redis.clients.jedis.ConnectionPool;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisSentinelPool;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * {@link InvalidationChannel} driven by Redis server-assisted client side caching.
+ * <p>
+ * For every node a subscriber connection listens on {@code __redis__:invalidate}. A second connection
+ * enables {@code CLIENT TRACKING ON REDIRECT <subscriber> BCAST PREFIX <prefix>}. Redis then pushes the
+ * name of every key under the storage prefix as soon as it changes, including writes made by other
+ * nodes or other applications. It uses RESP2 redirection, so it works with Redis 6+ on the Jedis version
+ * bundled here. Both connections are borrowed from the pool, or from every node pool in cluster mode, and
+ * held for as long as the channel is open. Nodes that join a cluster after subscription are not tracked,
+ * so keys moved to them are served from the near cache for at most its TTL.
+ */
+@Slf4j
+public class RedisTrackingInvalidationChannel implements InvalidationChannel {
+
+    private static final String INVALIDATE_CHANNEL = "__redis__:invalidate";
+    private static final long RECONNECT_DELAY_MS = 1000;
+    private static final long HEALTH_CHECK_INTERVAL_MS = 5000;
+
+    private final JedisPool jedisPool;
+    private final JedisCluster jedisCluster;
+    private final JedisSentinelPool jedisSentinelPool;
+    private final String prefixKey;
+
+    private final LongAdder invalidationMessages = new LongAdder();
+    private final List<Thread> trackerThreads = new CopyOnWriteArrayList<>();
+    private final List<Connection> subscriberConnections = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running;
+    private volatile long subscribedAt;
+
+    RedisTrackingInvalidationChannel(JedisPool jedisPool, JedisCluster jedisCluster,
+                                     JedisSentinelPool jedisSentinelPool, String prefixKey) {
+        this.jedisPool = jedisPool;
+        this.jedisCluster = jedisCluster;
+        this.jedisSentinelPool = jedisSentinelPool;
+        this.prefixKey = prefixKey;
+    }
+
+    public RedisTrackingInvalidationChannel(JedisPool jedisPool, String prefixKey) {
+        this(jedisPool, null, null, toStoragePrefix(prefixKey));
+    }
+
+    public RedisTrackingInvalidationChannel(JedisCluster jedisCluster, String prefixKey) {
+        this(null, jedisCluster, null, toStoragePrefix(prefixKey));
+    }
+
+    public RedisTrackingInvalidationChannel(JedisSentinelPool jedisSentinelPool, String prefixKey) {
+        this(null, null, jedisSentinelPool, toStoragePrefix(prefixKey));
+    }
+
+    @Override
+    public void publish(String key) {
+        // Redis tracks writes on its own, local writes are pushed back to every subscribed node
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<String> onInvalidate, Runnable onReset) {
+        if (running) {
+            throw new IllegalStateException("Invalidation channel is already subscribed");
+        }
+        running = true;
+        subscribedAt = System.currentTimeMillis();
+        if (jedisCluster != null) {
+            for (Map.Entry<String, ConnectionPool> node : jedisCluster.getClusterNodes()
+                                                                      .entrySet()) {
+                ConnectionPool pool = node.getValue();
+                startTracker(node.getKey(), () -> {
+                    Connection connection = pool.getResource();
+                    return new PooledConnection(connection, connection);
+                }, onInvalidate, onReset);
+            }
+        } else if (jedisSentinelPool != null) {
+            startTracker("sentinel-master", () -> {
+                Jedis jedis = jedisSentinelPool.getResource();
+                return new PooledConnection(jedis.getConnection(), jedis);
+            }, onInvalidate, onReset);
+        } else {
+            startTracker("standalone", () -> {
+                Jedis jedis = jedisPool.getResource();
+                return new PooledConnection(jedis.getConnection(), jedis);
+            }, onInvalidate, onReset);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        trackerThreads.forEach(Thread::interrupt);
+        // Unblocks the tracker threads, which then release their connections as broken
+        subscriberConnections.forEach(this::disconnectQuietly);
+        trackerThreads.clear();
+    }
+
+    /**
+     * Number of invalidation messages pushed by Redis since the channel was subscribed.
+     */
+    public long getInvalidationMessageCount() {
+        return invalidationMessages.sum();
+    }
+
+    /**
+     * Average number of invalidation messages per second since the channel was subscribed.
+     */
+    public double getInvalidationRate() {
+        long elapsedMs = System.currentTimeMillis() - subscribedAt;
+        return subscribedAt == 0 || elapsedMs <= 0 ? 0 : invalidationMessages.sum() * 1000.0 / elapsedMs;
+    }
+
+    private void startTracker(String nodeName, ConnectionSupplier connectionSupplier, Consumer<String> onInvalidate,
+                              Runnable onReset) {
+        Thread thread = new Thread(() -> track(nodeName, connectionSupplier, onInvalidate, onReset),
+                                   "fdk-redis-tracking-" + nodeName);
+        thread.setDaemon(true);
+        trackerThreads.add(thread);
+        thread.start();
+    }
+
+    private void track(String nodeName, ConnectionSupplier connectionSupplier, Consumer<String> onInvalidate,
+                       Runnable onReset) {
+        while (running) {
+            PooledConnection subscriber = null;
+            PooledConnection tracker = null;
+            Thread healthCheck = null;
+            try {
+                subscriber = connectionSupplier.get();
+                subscriberConnections.add(subscriber.connection);
+                tracker = connectionSupplier.get();
+
+                Long subscriberId = subscriber.connection.executeCommand(
+                        new CommandObject<>(new CommandArguments(Protocol.Command.CLIENT).add("ID"), BuilderFactory.LONG));
+                subscriber.connection.setTimeoutInfinite();
+                subscriber.connection.sendCommand(Protocol.Command.SUBSCRIBE, INVALIDATE_CHANNEL);
+                subscriber.connection.getOne(); // subscribe confirmation
+
+                CommandArguments trackingArgs = new CommandArguments(Protocol.Command.CLIENT).add("TRACKING")
+                                                                                              .add("ON")
+                                                                                              .add("REDIRECT")
+                                                                                              .add(subscriberId)
+                                                                                              .add("BCAST");
+                if (!prefixKey.isEmpty()) {
+                    trackingArgs.add("PREFIX")
+                                .add(prefixKey);
+                }
+                tracker.connection.executeCommand(new CommandObject<>(trackingArgs, BuilderFactory.STRING));
+                log.info("Redis client side caching enabled on {} for prefix '{}'", nodeName, prefixKey);
+
+                healthCheck = startHealthCheck(nodeName, tracker.connection, subscriber.connection);
+                readInvalidations(subscriber.connection, onInvalidate, onReset);
+            } catch (Exception e) {
+                if (running) {
+                    log.warn("Redis tracking connection to {} lost, reconnecting", nodeName, e);
+                }
+            } finally {
+                if (healthCheck != null) {
+                    healthCheck.interrupt();
+                }
+                if (subscriber != null) {
+                    subscriberConnections.remove(subscriber.connection);
+                    // A subscribed connection must never go back to the pool as healthy
+                    disconnectQuietly(subscriber.connection);
+                    subscriber.release();
+                }
+                if (tracker != null) {
+                    stopTracking(tracker.connection);
+                    tracker.release();
+                }
+            }
+            // Invalidations sent while disconnected are lost, so nothing cached can be trusted
+            onReset.run();
+            if (running) {
+                try {
+                    Thread.sleep(RECONNECT_DELAY_MS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread()
+                          .interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readInvalidations(Connection subscriber, Consumer<String> onInvalidate, Runnable onReset) {
+        while (running) {
+            Object reply = subscriber.getOne();
+            if (!(reply instanceof List) || ((List<Object>) reply).size() < 3) {
+                continue;
+            }
+            List<Object> message = (List<Object>) reply;
+            if (!"message".equals(SafeEncoder.encode((byte[]) message.get(0)))) {
+                continue;
+            }
+            invalidationMessages.increment();
+            Object keys = message.get(2);
+            if (keys == null) {
+                // Sent on FLUSHALL / FLUSHDB
+                onReset.run();
+                continue;
+            }
+            List<Object> redisKeys = keys instanceof List ? (List<Object>) keys : List.of(keys);
+            for (Object redisKey : redisKeys) {
+                String key = SafeEncoder.encode((byte[]) redisKey);
+                if (key.startsWith(prefixKey)) {
+                    onInvalidate.accept(key.substring(prefixKey.length()));
+                }
+            }
+        }
+    }
+
+    // Tracking stops silently when the tracking connection dies, so it is pinged and the subscriber is
+    // closed on failure to force a reconnect of both.
+    private Thread startHealthCheck(String nodeName, Connection tracker, Connection subscriber) {
+        Thread thread = new Thread(() -> {
+            try {
+                while (running && !Thread.currentThread()
+                                          .isInterrupted()) {
+                    Thread.sleep(HEALTH_CHECK_INTERVAL_MS);
+                    tracker.executeCommand(new CommandObject<>(new CommandArguments(Protocol.Command.PING),
+                                                               BuilderFactory.STRING));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread()
+                      .interrupt();
+            } catch (Exception e) {
+                log.warn("Redis tracking health check failed on {}", nodeName, e);
+                disconnectQuietly(subscriber);
+            }
+        }, "fdk-redis-tracking-health-" + nodeName);
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    private void stopTracking(Connection tracker) {
+        if (tracker.isBroken()) {
+            return;
+        }
+        try {
+            tracker.executeCommand(new CommandObject<>(new CommandArguments(Protocol.Command.CLIENT).add("TRACKING")
+                                                                                                   .add("OFF"),
+                                                       BuilderFactory.STRING));
+        } catch (Exception e) {
+            log.debug("Error disabling Redis tracking", e);
+        }
+    }
+
+    private void disconnectQuietly(Connection connection) {
+        try {
+            connection.disconnect();
+        } catch (Exception e) {
+            log.debug("Error closing Redis tracking connection", e);
+        }
+    }
+
+    private static String toStoragePrefix(String prefixKey) {
+        return prefixKey == null || prefixKey.isEmpty() ? "" : prefixKey + ":";
+    }
+
+    @FunctionalInterface
+    interface ConnectionSupplier {
+        PooledConnection get();
+    }
+
+    /**
+     * A connection together with the pooled object that has to be closed to hand it back.
+     */
+    static final class PooledConnection {
+
+        final Connection connection;
+
+        final AutoCloseable owner;
+
+        PooledConnection(Connection connection, AutoCloseable owner) {
+            this.connection = connection;
+            this.owner = owner;
+        }
+
+        void release() {
+            try {
+                owner.close();
+            } catch (Exception e) {
+                log.debug("Error releasing Redis tracking connection", e);
+            }
+        }
+    }
+}
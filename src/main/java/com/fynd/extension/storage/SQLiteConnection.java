@@ -0,0 +1,74 @@
+package com.fynd.extension.storage;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A long lived SQLite connection with its prepared statements cached by SQL text.
+ * <p>
+ * Not thread-safe, {@link SQLiteStorage} hands every instance to one thread at a time.
+ */
+class SQLiteConnection implements AutoCloseable {
+
+    private static final int MAX_CACHED_STATEMENTS = 64;
+
+    private final Connection connection;
+
+    private final Map<String, PreparedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+            if (size() <= MAX_CACHED_STATEMENTS) {
+                return false;
+            }
+            closeQuietly(eldest.getValue());
+            return true;
+        }
+    };
+
+    SQLiteConnection(String dbUrl, String... pragmas) throws SQLException {
+        this.connection = DriverManager.getConnection(dbUrl);
+        try (Statement stmt = connection.createStatement()) {
+            for (String pragma : pragmas) {
+                stmt.execute("PRAGMA " + pragma);
+            }
+        }
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    PreparedStatement prepare(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+        return statement;
+    }
+
+    @Override
+    public void close() {
+        statements.values()
+                  .forEach(SQLiteConnection::closeQuietly);
+        statements.clear();
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            // Nothing left to release
+        }
+    }
+
+    private static void closeQuietly(Statement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            // Statement is discarded either way
+        }
+    }
+}
@@ -1,84 +1,160 @@
 package com.fynd.extension.storage;
 
+import lombok.extern.slf4j.Slf4j;
+
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Storage backed by a SQLite database file.
+ * <p>
+ * Writes go through one dedicated connection, reads through a small pool of reader connections, and
+ * every connection keeps its prepared statements. The database runs in WAL mode so that readers never
+ * wait for the writer. In-memory databases are private to a connection, so they use the writer for
+ * reads too.
+ * <p>
+ * Strings live in the {@code storage} table and hash fields in {@code storage_hash}, one row per field.
+ * Expired strings are never returned and are removed by a background sweep in small batches.
+ */
+@Slf4j
+public class SQLiteStorage extends BaseStorage implements AutoCloseable {
+
+    // Stays below SQLite's default limit of 999 bound parameters per statement
+    private static final int MAX_BATCH_PARAMS = 500;
+
+    private static final int DEFAULT_READER_COUNT = 4;
+
+    // Rows removed per sweep statement, keeps every write lock held by the sweep short
+    private static final int SWEEP_BATCH_SIZE = 500;
+
+    private static final long SWEEP_INTERVAL_MS = 10000;
 
-public class SQLiteStorage extends BaseStorage {
+    private static final String[] WRITER_PRAGMAS = {"journal_mode=WAL", "synchronous=NORMAL", "busy_timeout=5000",
+            "mmap_size=268435456", "cache_size=-16000", "temp_store=MEMORY"};
+
+    private static final String[] READER_PRAGMAS = {"busy_timeout=5000", "mmap_size=268435456",
+            "cache_size=-16000", "temp_store=MEMORY"};
+
+    private static final String UPSERT = "INSERT INTO storage (key, value, ttl) VALUES (?, ?, ?) ON CONFLICT(key) DO UPDATE SET value = excluded.value, ttl = excluded.ttl";
 
     private final String dbUrl;
     private final String prefixKey;
+    private final SQLiteConnection writer;
+    private final BlockingQueue<SQLiteConnection> readers;
+    private final List<SQLiteConnection> readerConnections = new ArrayList<>();
     private Thread ttlCheckerThread;
 
     public SQLiteStorage(String dbUrl, String prefixKey) throws ClassNotFoundException {
+        this(dbUrl, prefixKey, DEFAULT_READER_COUNT);
+    }
+
+    /**
+     * @param readerCount number of connections serving reads concurrently with the writer
+     */
+    public SQLiteStorage(String dbUrl, String prefixKey, int readerCount) throws ClassNotFoundException {
         super(prefixKey);
         Class.forName("org.sqlite.JDBC");
         this.prefixKey = prefixKey;
         this.dbUrl = dbUrl;
-        initDatabase();
-        setupTTLChecker();
-    }
-
-    private void initDatabase() {
-
-        try (Connection conn = DriverManager.getConnection(dbUrl)) {
-            if (conn != null) {
-                String createTable = "CREATE TABLE IF NOT EXISTS storage (key TEXT PRIMARY KEY, value TEXT, ttl INTEGER)";
-                try (Statement stmt = conn.createStatement()) {
-                    stmt.execute(createTable);
-                }
+        try {
+            this.writer = new SQLiteConnection(dbUrl, WRITER_PRAGMAS);
+            initDatabase();
+            int count = isInMemory(dbUrl) ? 0 : Math.max(1, readerCount);
+            this.readers = new ArrayBlockingQueue<>(Math.max(1, count));
+            for (int i = 0; i < count; i++) {
+                SQLiteConnection reader = new SQLiteConnection(dbUrl, READER_PRAGMAS);
+                readerConnections.add(reader);
+                readers.add(reader);
             }
         } catch (SQLException e) {
+            close();
             throw new RuntimeException("Error initializing SQLite database", e);
         }
+        setupTTLChecker();
+    }
+
+    private void initDatabase() throws SQLException {
+        try (Statement stmt = writer.getConnection()
+                                    .createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS storage (key TEXT PRIMARY KEY, value TEXT, ttl INTEGER)");
+            stmt.execute("CREATE INDEX IF NOT EXISTS storage_ttl_idx ON storage (ttl)");
+            stmt.execute("CREATE TABLE IF NOT EXISTS storage_hash (key TEXT NOT NULL, field TEXT NOT NULL, value TEXT, PRIMARY KEY (key, field)) WITHOUT ROWID");
+        }
     }
 
     private void setupTTLChecker() {
         ttlCheckerThread = new Thread(() -> {
             while (!Thread.currentThread().isInterrupted()) {
-                try (Connection conn = DriverManager.getConnection(dbUrl);
-                     PreparedStatement pstmt = conn.prepareStatement("DELETE FROM storage WHERE ttl < ? AND ttl IS NOT NULL")) {
-                    pstmt.setLong(1, System.currentTimeMillis() / 1000);
-                    pstmt.executeUpdate();
-                    Thread.sleep(10000);
-                } catch (SQLException | InterruptedException e) {
-                    throw new RuntimeException("Error during TTL check", e);
+                try {
+                    sweepExpired();
+                } catch (SQLException e) {
+                    log.error("Error during TTL check", e);
+                }
+                try {
+                    Thread.sleep(SWEEP_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
                 }
             }
-        });
+        }, "fdk-sqlite-ttl-checker");
         ttlCheckerThread.setDaemon(true);
         ttlCheckerThread.start();
     }
 
+    // Deletes expired rows one batch per statement, so writers only ever wait for a single batch
+    private void sweepExpired() throws SQLException {
+        int deleted;
+        do {
+            deleted = write(conn -> {
+                PreparedStatement pstmt = conn.prepare(
+                        "DELETE FROM storage WHERE rowid IN (SELECT rowid FROM storage WHERE ttl <= ? LIMIT ?)");
+                pstmt.setLong(1, nowSeconds());
+                pstmt.setInt(2, SWEEP_BATCH_SIZE);
+                return pstmt.executeUpdate();
+            });
+        } while (deleted == SWEEP_BATCH_SIZE && !Thread.currentThread()
+                                                       .isInterrupted());
+    }
+
     @Override
     public String get(String key) {
-        String query = "SELECT value FROM storage WHERE key = ?";
-        try (Connection conn = DriverManager.getConnection(dbUrl);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, super.prefixKey + key);
-            ResultSet rs = pstmt.executeQuery();
-            if (rs.next()) {
-                return rs.getString("value");
-            }
+        try {
+            return read(conn -> {
+                PreparedStatement pstmt = conn.prepare(
+                        "SELECT value FROM storage WHERE key = ? AND (ttl IS NULL OR ttl > ?)");
+                pstmt.setString(1, super.prefixKey + key);
+                pstmt.setLong(2, nowSeconds());
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getString("value") : null;
+                }
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Error getting value from SQLite", e);
         }
-        return null;
     }
 
     @Override
     public String set(String key, String value) {
-        String query = "INSERT INTO storage (key, value) VALUES (?, ?) ON CONFLICT(key) DO UPDATE SET value = excluded.value";
-        try (Connection conn = DriverManager.getConnection(dbUrl);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, super.prefixKey + key);
-            pstmt.setString(2, value);
-            pstmt.executeUpdate();
-            return value;
+        try {
+            return write(conn -> {
+                PreparedStatement pstmt = conn.prepare(UPSERT);
+                pstmt.setString(1, super.prefixKey + key);
+                pstmt.setString(2, value);
+                pstmt.setNull(3, Types.INTEGER);
+                pstmt.executeUpdate();
+                return value;
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Error setting value in SQLite", e);
         }
@@ -86,12 +162,15 @@ public class SQLiteStorage extends BaseStorage {
 
     @Override
     public Long del(String key) {
-        String query = "DELETE FROM storage WHERE key = ?";
-        try (Connection conn = DriverManager.getConnection(dbUrl);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, super.prefixKey + key);
-            int affectedRows = pstmt.executeUpdate();
-            return (long) affectedRows;
+        try {
+            return write(conn -> {
+                PreparedStatement pstmt = conn.prepare("DELETE FROM storage WHERE key = ?");
+                pstmt.setString(1, super.prefixKey + key);
+                long deleted = pstmt.executeUpdate();
+                PreparedStatement hashStmt = conn.prepare("DELETE FROM storage_hash WHERE key = ?");
+                hashStmt.setString(1, super.prefixKey + key);
+                return hashStmt.executeUpdate() > 0 ? deleted + 1 : deleted;
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Error deleting value from SQLite", e);
         }
@@ -99,33 +178,260 @@ public class SQLiteStorage extends BaseStorage {
 
     @Override
     public String setex(String key, int ttl, String value) {
-        String query = "INSERT INTO storage (key, value, ttl) VALUES (?, ?, ?) ON CONFLICT(key) DO UPDATE SET value = excluded.value, ttl = excluded.ttl";
-        long expiresAt = System.currentTimeMillis() / 1000 + ttl;
-        try (Connection conn = DriverManager.getConnection(dbUrl);
-             PreparedStatement pstmt = conn.prepareStatement(query)) {
-            pstmt.setString(1, super.prefixKey + key);
-            pstmt.setString(2, value);
-            pstmt.setLong(3, expiresAt);
-            pstmt.executeUpdate();
-            return value;
+        long expiresAt = nowSeconds() + ttl;
+        try {
+            return write(conn -> {
+                PreparedStatement pstmt = conn.prepare(UPSERT);
+                pstmt.setString(1, super.prefixKey + key);
+                pstmt.setString(2, value);
+                pstmt.setLong(3, expiresAt);
+                pstmt.executeUpdate();
+                return value;
+            });
         } catch (SQLException e) {
             throw new RuntimeException("Error setting value with TTL in SQLite", e);
         }
     }
 
+    @Override
+    public Boolean setnx(String key, String value, int ttl) {
+        long now = nowSeconds();
+        try {
+            return write(conn -> {
+                // An expired row counts as absent, it is taken over in place
+                PreparedStatement pstmt = conn.prepare(
+                        "INSERT INTO storage (key, value, ttl) VALUES (?, ?, ?) ON CONFLICT(key) DO UPDATE SET value = excluded.value, ttl = excluded.ttl WHERE storage.ttl IS NOT NULL AND storage.ttl <= ?");
+                pstmt.setString(1, super.prefixKey + key);
+                pstmt.setString(2, value);
+                pstmt.setLong(3, now + ttl);
+                pstmt.setLong(4, now);
+                return pstmt.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error setting value if absent in SQLite", e);
+        }
+    }
+
+    @Override
+    public Boolean delIfEquals(String key, String value) {
+        try {
+            return write(conn -> {
+                PreparedStatement pstmt = conn.prepare("DELETE FROM storage WHERE key = ? AND value = ?");
+                pstmt.setString(1, super.prefixKey + key);
+                pstmt.setString(2, value);
+                return pstmt.executeUpdate() > 0;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error deleting value in SQLite", e);
+        }
+    }
+
+    @Override
+    public List<String> mget(List<String> keys) {
+        Map<String, String> valuesByKey = new HashMap<>();
+        try {
+            read(conn -> {
+                for (int from = 0; from < keys.size(); from += MAX_BATCH_PARAMS) {
+                    List<String> chunk = keys.subList(from, Math.min(from + MAX_BATCH_PARAMS, keys.size()));
+                    PreparedStatement pstmt = conn.prepare("SELECT key, value FROM storage WHERE key IN ("
+                            + placeholders(chunk.size()) + ") AND (ttl IS NULL OR ttl > ?)");
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setString(i + 1, super.prefixKey + chunk.get(i));
+                    }
+                    pstmt.setLong(chunk.size() + 1, nowSeconds());
+                    try (ResultSet rs = pstmt.executeQuery()) {
+                        while (rs.next()) {
+                            valuesByKey.put(rs.getString("key"), rs.getString("value"));
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error getting values from SQLite", e);
+        }
+        List<String> values = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            values.add(valuesByKey.get(super.prefixKey + key));
+        }
+        return values;
+    }
+
+    @Override
+    public String mset(Map<String, String> entries) {
+        try {
+            return write(conn -> {
+                Connection connection = conn.getConnection();
+                connection.setAutoCommit(false);
+                try {
+                    PreparedStatement pstmt = conn.prepare(UPSERT);
+                    for (Map.Entry<String, String> entry : entries.entrySet()) {
+                        pstmt.setString(1, super.prefixKey + entry.getKey());
+                        pstmt.setString(2, entry.getValue());
+                        pstmt.setNull(3, Types.INTEGER);
+                        pstmt.addBatch();
+                    }
+                    pstmt.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(true);
+                }
+                return "OK";
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error setting values in SQLite", e);
+        }
+    }
+
+    @Override
+    public Long mdel(List<String> keys) {
+        try {
+            return write(conn -> {
+                long deleted = 0;
+                for (int from = 0; from < keys.size(); from += MAX_BATCH_PARAMS) {
+                    List<String> chunk = keys.subList(from, Math.min(from + MAX_BATCH_PARAMS, keys.size()));
+                    PreparedStatement pstmt = conn.prepare(
+                            "DELETE FROM storage WHERE key IN (" + placeholders(chunk.size()) + ")");
+                    PreparedStatement hashStmt = conn.prepare(
+                            "DELETE FROM storage_hash WHERE key IN (" + placeholders(chunk.size()) + ")");
+                    for (int i = 0; i < chunk.size(); i++) {
+                        pstmt.setString(i + 1, super.prefixKey + chunk.get(i));
+                        hashStmt.setString(i + 1, super.prefixKey + chunk.get(i));
+                    }
+                    deleted += pstmt.executeUpdate();
+                    hashStmt.executeUpdate();
+                }
+                return deleted;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error deleting values from SQLite", e);
+        }
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private static boolean isInMemory(String dbUrl) {
+        return dbUrl.contains(":memory:") || dbUrl.contains("mode=memory");
+    }
+
+    private <T> T write(SQLiteAction<T> action) throws SQLException {
+        synchronized (writer) {
+            return action.apply(writer);
+        }
+    }
+
+    private <T> T read(SQLiteAction<T> action) throws SQLException {
+        if (readerConnections.isEmpty()) {
+            return write(action);
+        }
+        SQLiteConnection reader;
+        try {
+            reader = readers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread()
+                  .interrupt();
+            throw new SQLException("Interrupted while waiting for a SQLite reader connection", e);
+        }
+        try {
+            return action.apply(reader);
+        } finally {
+            readers.add(reader);
+        }
+    }
+
+    @FunctionalInterface
+    private interface SQLiteAction<T> {
+        T apply(SQLiteConnection conn) throws SQLException;
+    }
+
     @Override
     public String hget(String key, String hashKey) {
-        throw new UnsupportedOperationException("hget not implemented for SQLiteStorage");
+        try {
+            return read(conn -> {
+                PreparedStatement pstmt = conn.prepare("SELECT value FROM storage_hash WHERE key = ? AND field = ?");
+                pstmt.setString(1, super.prefixKey + key);
+                pstmt.setString(2, hashKey);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    return rs.next() ? rs.getString("value") : null;
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error getting hash field from SQLite", e);
+        }
     }
 
     @Override
     public Long hset(String key, String hashKey, String value) {
-        throw new UnsupportedOperationException("hset not implemented for SQLiteStorage");
+        try {
+            return write(conn -> {
+                PreparedStatement existsStmt = conn.prepare("SELECT 1 FROM storage_hash WHERE key = ? AND field = ?");
+                existsStmt.setString(1, super.prefixKey + key);
+                existsStmt.setString(2, hashKey);
+                boolean exists;
+                try (ResultSet rs = existsStmt.executeQuery()) {
+                    exists = rs.next();
+                }
+                PreparedStatement pstmt = conn.prepare(
+                        "INSERT INTO storage_hash (key, field, value) VALUES (?, ?, ?) ON CONFLICT(key, field) DO UPDATE SET value = excluded.value");
+                pstmt.setString(1, super.prefixKey + key);
+                pstmt.setString(2, hashKey);
+                pstmt.setString(3, value);
+                pstmt.executeUpdate();
+                return exists ? 0L : 1L;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error setting hash field in SQLite", e);
+        }
     }
 
     @Override
     public Map<String, Object> hgetall(String key) {
-        throw new UnsupportedOperationException("hgetall not implemented for SQLiteStorage");
+        try {
+            return read(conn -> {
+                PreparedStatement pstmt = conn.prepare("SELECT field, value FROM storage_hash WHERE key = ?");
+                pstmt.setString(1, super.prefixKey + key);
+                Map<String, Object> hash = new HashMap<>();
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    while (rs.next()) {
+                        hash.put(rs.getString("field"), rs.getString("value"));
+                    }
+                }
+                return hash;
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error getting hash from SQLite", e);
+        }
+    }
+
+    @Override
+    public Long getTTL(String key) {
+        try {
+            return read(conn -> {
+                PreparedStatement pstmt = conn.prepare(
+                        "SELECT ttl FROM storage WHERE key = ? AND (ttl IS NULL OR ttl > ?)");
+                pstmt.setString(1, super.prefixKey + key);
+                long now = nowSeconds();
+                pstmt.setLong(2, now);
+                try (ResultSet rs = pstmt.executeQuery()) {
+                    if (!rs.next()) {
+                        return -2L;
+                    }
+                    long expiresAt = rs.getLong("ttl");
+                    return rs.wasNull() ? -1L : expiresAt - now;
+                }
+            });
+        } catch (SQLException e) {
+            throw new RuntimeException("Error getting TTL from SQLite", e);
+        }
     }
 
     public void stopTTLChecker() {
@@ -133,4 +439,18 @@ public class SQLiteStorage extends BaseStorage {
             ttlCheckerThread.interrupt();
         }
     }
+
+    /**
+     * Stops the TTL checker and closes every connection.
+     */
+    @Override
+    public void close() {
+        stopTTLChecker();
+        readerConnections.forEach(SQLiteConnection::close);
+        if (writer != null) {
+            synchronized (writer) {
+                writer.close();
+            }
+        }
+    }
 }